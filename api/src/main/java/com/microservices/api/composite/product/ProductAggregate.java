@@ -10,6 +10,8 @@ public class ProductAggregate {
   private final List<RecommendationSummary> recommendations;
   private final List<ReviewSummary> reviews;
   private final ServiceAddresses serviceAddresses;
+  private final Long recommendationCount;
+  private final Long reviewCount;
 
   public ProductAggregate() {
     productId = 0;
@@ -18,6 +20,8 @@ public class ProductAggregate {
     recommendations = null;
     reviews = null;
     serviceAddresses = null;
+    recommendationCount = null;
+    reviewCount = null;
   }
 
   public ProductAggregate(
@@ -28,12 +32,31 @@ public class ProductAggregate {
           List<ReviewSummary> reviews,
           ServiceAddresses serviceAddresses) {
 
+    this(productId, name, weight, recommendations, reviews, serviceAddresses, null, null);
+  }
+
+  /**
+   * Creates a preview of a product, where the recommendations and reviews are the first ones
+   * and the counts are the total number of recommendations and reviews of the product.
+   */
+  public ProductAggregate(
+          int productId,
+          String name,
+          int weight,
+          List<RecommendationSummary> recommendations,
+          List<ReviewSummary> reviews,
+          ServiceAddresses serviceAddresses,
+          Long recommendationCount,
+          Long reviewCount) {
+
     this.productId = productId;
     this.name = name;
     this.weight = weight;
     this.recommendations = recommendations;
     this.reviews = reviews;
     this.serviceAddresses = serviceAddresses;
+    this.recommendationCount = recommendationCount;
+    this.reviewCount = reviewCount;
   }
 
   public int getProductId() {
@@ -59,4 +82,12 @@ public class ProductAggregate {
   public ServiceAddresses getServiceAddresses() {
     return serviceAddresses;
   }
+
+  public Long getRecommendationCount() {
+    return recommendationCount;
+  }
+
+  public Long getReviewCount() {
+    return reviewCount;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.microservices.api.composite.product;
+
+public class ProductAggregateResult {
+
+  private final int productId;
+  private final int status;
+  private final String message;
+  private final ProductAggregate product;
+
+  public ProductAggregateResult() {
+    this.productId = 0;
+    this.status = 0;
+    this.message = null;
+    this.product = null;
+  }
+
+  public ProductAggregateResult(int productId, int status, String message, ProductAggregate product) {
+    this.productId = productId;
+    this.status = status;
+    this.message = message;
+    this.product = product;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public ProductAggregate getProduct() {
+    return product;
+  }
+}
@@ -5,8 +5,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Tag(name = "ProductComposite", description = "REST API for composite product information.")
 public interface ProductCompositeService {
 
@@ -51,6 +54,72 @@ public interface ProductCompositeService {
           produces = "application/json")
   Mono<ProductAggregate> getProduct(@PathVariable int productId);
 
+  /**
+   * Sample usage: "curl $HOST:$PORT/product-composite/1?preview=5".
+   *
+   * @param productId Id of the product
+   * @param preview Max number of recommendations and reviews to include
+   * @return the composite product info with the first recommendations and reviews and their total counts
+   */
+  @Operation(
+          summary = "${api.product-composite.get-composite-product-preview.description}",
+          description = "${api.product-composite.get-composite-product-preview.notes}")
+  @ApiResponses(value = {
+          @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+          @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+          @ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+          @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @GetMapping(
+          value = "/product-composite/{productId}",
+          params = "preview",
+          produces = "application/json")
+  Mono<ProductAggregate> getProductPreview(@PathVariable int productId, @RequestParam(value = "preview", required = true) int preview);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/product-composite?ids=1,2,3".
+   *
+   * Request "application/x-ndjson" to receive each entry as soon as its composite is assembled.
+   *
+   * @param productIds Ids of the products
+   * @return one entry per distinct product id, with the composite product info or the error for that id
+   */
+  @Operation(
+          summary = "${api.product-composite.get-composite-products.description}",
+          description = "${api.product-composite.get-composite-products.notes}")
+  @ApiResponses(value = {
+          @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+          @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+          @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @GetMapping(
+          value = "/product-composite",
+          produces = {"application/json", "application/x-ndjson"})
+  Flux<ProductAggregateResult> getProducts(@RequestParam(value = "ids", required = true) List<Integer> productIds);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X POST $HOST:$PORT/product-composite/batch \
+   *   -H "Content-Type: application/json" --data '[1,2,3]'
+   *
+   * @param productIds A JSON array with the ids of the products
+   * @return one entry per distinct product id, with the composite product info or the error for that id
+   */
+  @Operation(
+          summary = "${api.product-composite.get-composite-products.description}",
+          description = "${api.product-composite.get-composite-products.notes}")
+  @ApiResponses(value = {
+          @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+          @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+          @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+  })
+  @PostMapping(
+          value = "/product-composite/batch",
+          consumes = "application/json",
+          produces = {"application/json", "application/x-ndjson"})
+  Flux<ProductAggregateResult> getProductBatch(@RequestBody List<Integer> productIds);
+
   /**
    * Sample usage: "curl -X DELETE $HOST:$PORT/product-composite/1".
    *
@@ -4,6 +4,7 @@ public class Product {
     private int productId;
     private String name;
     private int weight;
+    private int version;
     private String serviceAddress;
 
     public Product() {
@@ -44,6 +45,14 @@ public class Product {
         this.weight = weight;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getServiceAddress() {
         return serviceAddress;
     }
@@ -1,8 +1,11 @@
 package com.microservices.api.core.product;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface ProductService {
 
     Mono<Product> createProduct(Product body);
@@ -18,5 +21,16 @@ public interface ProductService {
             produces = "application/json")
     Mono<Product> getProduct(@PathVariable int productId);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/product?productIds=1,2,3".
+     *
+     * @param productIds Ids of the products
+     * @return the products found, ordered by productId
+     */
+    @GetMapping(
+            value = "/product",
+            produces = "application/json")
+    Flux<Product> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
     Mono<Void> deleteProduct(int productId);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ public class Recommendation {
     private String author;
     private int rate;
     private String content;
+    private int version;
     private String serviceAddress;
 
     public Recommendation() {
@@ -73,6 +74,14 @@ public class Recommendation {
         this.content = content;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getServiceAddress() {
         return serviceAddress;
     }
@@ -18,10 +18,93 @@ public interface RecommendationService {
      */
     @GetMapping(
             value = "/recommendation",
+            params = "!productIds",
             produces = "application/json")
     Flux<Recommendation> getRecommendations(
             @RequestParam(value = "productId", required = true) int productId);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation?productIds=1,2,3".
+     *
+     * Can't be combined with a page, i.e. a request with both productIds and limit is rejected with 400.
+     *
+     * @param productIds Ids of the products
+     * @return the recommendations of the products, grouped by productId
+     */
+    @GetMapping(
+            value = "/recommendation",
+            params = {"productIds", "!limit"},
+            produces = "application/json")
+    Flux<Recommendation> getRecommendationsByProductIds(
+            @RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation?productId=1&after=20&limit=10".
+     *
+     * @param productId Id of the product
+     * @param after Only recommendations with a greater recommendationId are returned, i.e. the last recommendationId of the previous page
+     * @param limit Max number of recommendations to return
+     * @return a page of the recommendations of the product, ordered by recommendationId
+     */
+    @GetMapping(
+            value = "/recommendation",
+            params = {"limit", "!productIds"},
+            produces = "application/json")
+    Flux<Recommendation> getRecommendationsPage(
+            @RequestParam(value = "productId", required = true) int productId,
+            @RequestParam(value = "after", required = false, defaultValue = "0") int after,
+            @RequestParam(value = "limit", required = true) int limit);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/top?productId=1&k=5".
+     *
+     * @param productId Id of the product
+     * @param k Max number of recommendations to return
+     * @return the k best recommendations of the product, ordered by rate descending and then recommendationId
+     */
+    @GetMapping(
+            value = "/recommendation/top",
+            produces = "application/json")
+    Flux<Recommendation> getTopRecommendations(
+            @RequestParam(value = "productId", required = true) int productId,
+            @RequestParam(value = "k", required = false, defaultValue = "5") int k);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/similar?productId=1&k=5".
+     *
+     * @param productId Id of the product
+     * @param k Max number of products to return
+     * @return the products most often recommended by the same authors as the product, ordered by the number of such authors descending
+     */
+    @GetMapping(
+            value = "/recommendation/similar",
+            produces = "application/json")
+    Flux<SimilarProduct> getSimilarProducts(
+            @RequestParam(value = "productId", required = true) int productId,
+            @RequestParam(value = "k", required = false, defaultValue = "5") int k);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/count?productId=1".
+     *
+     * @param productId Id of the product
+     * @return the number of recommendations of the product
+     */
+    @GetMapping(
+            value = "/recommendation/count",
+            produces = "application/json")
+    Mono<Long> countRecommendations(@RequestParam(value = "productId", required = true) int productId);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/statistics?productId=1".
+     *
+     * @param productId Id of the product
+     * @return the number of recommendations, the average rate and the number of recommendations per rate of the product
+     */
+    @GetMapping(
+            value = "/recommendation/statistics",
+            produces = "application/json")
+    Mono<RecommendationStatistics> getRecommendationStatistics(@RequestParam(value = "productId", required = true) int productId);
+
     /**
      * Sample usage: "curl -X DELETE $HOST:$PORT/recommendation?productId=1".
      *
@@ -0,0 +1,73 @@
+package com.microservices.api.core.recommendation;
+
+import java.util.Map;
+
+public class RecommendationStatistics {
+    private int productId;
+    private long count;
+    private double averageRate;
+    private Map<Integer, Long> histogram;
+    private String serviceAddress;
+
+    public RecommendationStatistics() {
+        productId = 0;
+        count = 0;
+        averageRate = 0;
+        histogram = null;
+        serviceAddress = null;
+    }
+
+    public RecommendationStatistics(
+            int productId,
+            long count,
+            double averageRate,
+            Map<Integer, Long> histogram,
+            String serviceAddress) {
+
+        this.productId = productId;
+        this.count = count;
+        this.averageRate = averageRate;
+        this.histogram = histogram;
+        this.serviceAddress = serviceAddress;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getAverageRate() {
+        return averageRate;
+    }
+
+    public void setAverageRate(double averageRate) {
+        this.averageRate = averageRate;
+    }
+
+    public Map<Integer, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Map<Integer, Long> histogram) {
+        this.histogram = histogram;
+    }
+
+    public String getServiceAddress() {
+        return serviceAddress;
+    }
+
+    public void setServiceAddress(String serviceAddress) {
+        this.serviceAddress = serviceAddress;
+    }
+}
@@ -0,0 +1,43 @@
+package com.microservices.api.core.recommendation;
+
+public class SimilarProduct {
+    private int productId;
+    private int coOccurrences;
+    private String serviceAddress;
+
+    public SimilarProduct() {
+        productId = 0;
+        coOccurrences = 0;
+        serviceAddress = null;
+    }
+
+    public SimilarProduct(int productId, int coOccurrences, String serviceAddress) {
+        this.productId = productId;
+        this.coOccurrences = coOccurrences;
+        this.serviceAddress = serviceAddress;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getCoOccurrences() {
+        return coOccurrences;
+    }
+
+    public void setCoOccurrences(int coOccurrences) {
+        this.coOccurrences = coOccurrences;
+    }
+
+    public String getServiceAddress() {
+        return serviceAddress;
+    }
+
+    public void setServiceAddress(String serviceAddress) {
+        this.serviceAddress = serviceAddress;
+    }
+}
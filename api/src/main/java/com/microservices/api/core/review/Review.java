@@ -6,6 +6,7 @@ public class Review {
     private String author;
     private String subject;
     private String content;
+    private int version;
     private String serviceAddress;
 
     public Review() {
@@ -33,6 +34,19 @@ public class Review {
         this.serviceAddress = serviceAddress;
     }
 
+    public Review(
+            int productId,
+            int reviewId,
+            String author,
+            String subject,
+            String content,
+            int version,
+            String serviceAddress) {
+
+        this(productId, reviewId, author, subject, content, serviceAddress);
+        this.version = version;
+    }
+
     public int getProductId() {
         return productId;
     }
@@ -73,6 +87,14 @@ public class Review {
         this.content = content;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getServiceAddress() {
         return serviceAddress;
     }
@@ -18,8 +18,51 @@ public interface ReviewService {
      */
     @GetMapping(
             value = "/review",
+            params = "!productIds",
             produces = "application/json")
     Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/review?productIds=1,2,3".
+     *
+     * Can't be combined with a page, i.e. a request with both productIds and limit is rejected with 400.
+     *
+     * @param productIds Ids of the products
+     * @return the reviews of the products, grouped by productId
+     */
+    @GetMapping(
+            value = "/review",
+            params = {"productIds", "!limit"},
+            produces = "application/json")
+    Flux<Review> getReviewsByProductIds(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/review?productId=1&after=20&limit=10".
+     *
+     * @param productId Id of the product
+     * @param after Only reviews with a greater reviewId are returned, i.e. the last reviewId of the previous page
+     * @param limit Max number of reviews to return
+     * @return a page of the reviews of the product, ordered by reviewId
+     */
+    @GetMapping(
+            value = "/review",
+            params = {"limit", "!productIds"},
+            produces = "application/json")
+    Flux<Review> getReviewsPage(
+            @RequestParam(value = "productId", required = true) int productId,
+            @RequestParam(value = "after", required = false, defaultValue = "0") int after,
+            @RequestParam(value = "limit", required = true) int limit);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/review/count?productId=1".
+     *
+     * @param productId Id of the product
+     * @return the number of reviews of the product
+     */
+    @GetMapping(
+            value = "/review/count",
+            produces = "application/json")
+    Mono<Long> countReviews(@RequestParam(value = "productId", required = true) int productId);
+
     Mono<Void> deleteReviews(int productId);
 }
@@ -0,0 +1,132 @@
+package com.microservices.composite.product.services;
+
+import com.microservices.composite.product.services.ProductAggregateCache.CachedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Collections.singletonList;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Answers GET /product-composite/{productId} from the cached response bytes, so a cache hit neither deserializes nor
+ * serializes the aggregate. A request whose If-None-Match matches the ETag gets 304 Not Modified without a body,
+ * and a request that accepts gzip gets the gzip variant if there is one.
+ *
+ * Misses, previews and requests that don't accept JSON go on to the controller. On a miss, the exchange is put in the
+ * Reactor context, and the controller sets the ETAG_ATTRIBUTE of the exchange to the ETag of the aggregate it cached
+ * for this response. A miss is answered with that ETag, and without one if the aggregate was not cached, e.g. since
+ * it was invalidated while being assembled or a core service failed. Hits and misses both vary by Accept-Encoding,
+ * since a hit may be answered with the gzip variant.
+ */
+@Component
+@ConditionalOnExpression("${app.product-composite.cache.enabled:true}")
+public class CachedAggregateWebFilter implements WebFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedAggregateWebFilter.class);
+
+    /**
+     * Exchange attribute with the ETag of the aggregate that the controller cached for the response.
+     */
+    public static final String ETAG_ATTRIBUTE = CachedAggregateWebFilter.class.getName() + ".eTag";
+
+    private static final Pattern PRODUCT_PATH = Pattern.compile("/product-composite/([1-9][0-9]{0,8})");
+
+    private static final Pattern ZERO_QUALITY = Pattern.compile("q\\s*=\\s*0(\\.0*)?");
+
+    private static final String GZIP = "gzip";
+
+    private final ProductAggregateCache cache;
+
+    @Autowired
+    public CachedAggregateWebFilter(ProductAggregateCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        HttpHeaders requestHeaders = request.getHeaders();
+        if (request.getMethod() != HttpMethod.GET || !request.getQueryParams().isEmpty() || !acceptsJson(requestHeaders.getAccept())) {
+            return chain.filter(exchange);
+        }
+
+        Matcher matcher = PRODUCT_PATH.matcher(request.getPath().pathWithinApplication().value());
+        if (!matcher.matches()) {
+            return chain.filter(exchange);
+        }
+
+        int productId = Integer.parseInt(matcher.group(1));
+        ServerHttpResponse response = exchange.getResponse();
+        CachedResponse cached = cache.getResponse(productId, requestHeaders.getIfNoneMatch(), acceptsGzip(requestHeaders), response.bufferFactory());
+        if (cached == null) {
+            response.beforeCommit(() -> {
+                if (response.getStatusCode() == null || response.getStatusCode() == HttpStatus.OK) {
+                    // Later hits of the same URL may be gzip encoded
+                    response.getHeaders().setVary(singletonList(HttpHeaders.ACCEPT_ENCODING));
+
+                    String eTag = exchange.getAttribute(ETAG_ATTRIBUTE);
+                    if (eTag != null) {
+                        response.getHeaders().setETag(eTag);
+                    }
+                }
+                return Mono.empty();
+            });
+            return chain.filter(exchange).contextWrite(Context.of(ServerWebExchange.class, exchange));
+        }
+
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.getETag());
+        headers.setVary(singletonList(HttpHeaders.ACCEPT_ENCODING));
+
+        if (cached.isNotModified()) {
+            LOG.debug("The cached aggregate for productId: {} is not modified", productId);
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        LOG.debug("Serves the cached aggregate for productId: {}, gzip: {}", productId, cached.isGzip());
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentType(APPLICATION_JSON);
+        headers.setContentLength(cached.getBody().readableByteCount());
+        if (cached.isGzip()) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        return response.writeWith(Mono.just(cached.getBody()));
+    }
+
+    private boolean acceptsJson(List<MediaType> accept) {
+        return accept.isEmpty() || accept.stream().anyMatch(APPLICATION_JSON::isCompatibleWith);
+    }
+
+    // True if Accept-Encoding lists gzip without a quality of 0
+    private boolean acceptsGzip(HttpHeaders headers) {
+        for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parameters = coding.split(";");
+                if (GZIP.equalsIgnoreCase(parameters[0].trim())
+                        && (parameters.length == 1 || !ZERO_QUALITY.matcher(parameters[1].trim()).matches())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
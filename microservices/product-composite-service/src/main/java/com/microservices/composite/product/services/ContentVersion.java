@@ -0,0 +1,68 @@
+package com.microservices.composite.product.services;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+
+import java.util.List;
+
+/**
+ * 64-bit FNV-1a hash over the ids, versions and fields of the core objects an aggregate is assembled from.
+ *
+ * The versions alone don't identify the content, since products, recommendations and reviews are only created and
+ * deleted, never updated, so every stored version is 0 and a deleted and re-created product keeps its versions.
+ * The serviceAddresses are left out, so every instance computes the same version for the same content.
+ */
+final class ContentVersion {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    private ContentVersion() {
+    }
+
+    static long of(Product product, List<Recommendation> recommendations, List<Review> reviews) {
+        ContentVersion version = new ContentVersion();
+
+        version.add(product.getProductId()).add(product.getVersion()).add(product.getName()).add(product.getWeight());
+
+        version.add(recommendations == null ? -1 : recommendations.size());
+        if (recommendations != null) {
+            for (Recommendation r : recommendations) {
+                version.add(r.getRecommendationId()).add(r.getVersion()).add(r.getAuthor()).add(r.getRate()).add(r.getContent());
+            }
+        }
+
+        version.add(reviews == null ? -1 : reviews.size());
+        if (reviews != null) {
+            for (Review r : reviews) {
+                version.add(r.getReviewId()).add(r.getVersion()).add(r.getAuthor()).add(r.getSubject()).add(r.getContent());
+            }
+        }
+
+        return version.hash;
+    }
+
+    private ContentVersion add(int value) {
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return this;
+    }
+
+    // The length goes first, so adjacent strings can't shift characters between them
+    private ContentVersion add(String value) {
+        if (value == null) {
+            return add(-1);
+        }
+        add(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return this;
+    }
+}
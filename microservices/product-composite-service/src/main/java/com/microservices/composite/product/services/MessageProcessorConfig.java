@@ -0,0 +1,38 @@
+package com.microservices.composite.product.services;
+
+import com.microservices.api.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Consumer;
+
+@Configuration
+public class MessageProcessorConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
+
+    private final ProductAggregateCache cache;
+
+    @Autowired
+    public MessageProcessorConfig(ProductAggregateCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Listens, without a consumer group, on the same destinations as the composite publishes to,
+     * so every instance sees every event and can drop its cached aggregate for the affected product.
+     */
+    @Bean
+    public Consumer<Event<Integer, Object>> cacheInvalidator() {
+        return event -> {
+            LOG.debug("Process {} event for productId: {}", event.getEventType(), event.getKey());
+
+            if (event.getKey() != null) {
+                cache.invalidate(event.getKey());
+            }
+        };
+    }
+}
@@ -0,0 +1,432 @@
+package com.microservices.composite.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Serialized payloads keyed by productId, stored outside the Java heap in direct buffers or in buffers mapped from a
+ * file. Whether that uses less heap or GC time than the heap tier for a given working set has not been measured, see
+ * AggregateCacheBenchmarkTests.
+ *
+ * The capacity is split evenly over slab classes of fixed-size slots, a payload goes to the class with the smallest
+ * slot it fits in and payloads larger than the largest slot are not stored. Every class evicts with a clock: a read
+ * sets the referenced flag of a slot, and the hand clears flags until it finds a slot that was not read since its
+ * last pass. An open addressing index maps productIds to their class and slot, so the heap only holds the index and
+ * a few ints per slot.
+ *
+ * Reads run concurrently under a read lock and see the payload as a read-only ByteBuffer that is only valid during
+ * the read, writes and evictions take the write lock.
+ */
+public class OffHeapAggregateStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapAggregateStore.class);
+
+    // A location is the slab class in the upper bits and the slot in the lower bits
+    private static final int SLOT_BITS = 28;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final SlabClass[] slabClasses;
+
+    private final Index index;
+
+    private final long expireAfterWriteMillis;
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final FileChannel mappedFile;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private long usedBytes;
+
+    /**
+     * @param mappedFile file to map the buffers from, or null for direct buffers
+     */
+    public OffHeapAggregateStore(long capacityBytes, int[] slotSizes, long expireAfterWriteMillis, Path mappedFile) {
+        if (slotSizes.length == 0 || slotSizes.length > 1 << (Integer.SIZE - 1 - SLOT_BITS)) {
+            throw new IllegalArgumentException("Invalid number of slot sizes: " + slotSizes.length);
+        }
+
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        this.slabClasses = new SlabClass[slotSizes.length];
+
+        try {
+            this.mappedFile = mappedFile == null ? null : FileChannel.open(mappedFile, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+
+            long fileOffset = 0;
+            int totalSlots = 0;
+            for (int i = 0; i < slotSizes.length; i++) {
+                if (i > 0 && slotSizes[i] <= slotSizes[i - 1]) {
+                    throw new IllegalArgumentException("Slot sizes must be ascending, got " + slotSizes[i] + " after " + slotSizes[i - 1]);
+                }
+                long slotCount = Math.min(capacityBytes / slotSizes.length / slotSizes[i], SLOT_MASK);
+                slabClasses[i] = new SlabClass(slotSizes[i], (int) slotCount, fileOffset);
+                fileOffset += slotCount * slotSizes[i];
+                totalSlots += slotCount;
+            }
+            this.index = new Index(totalSlots);
+
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to map " + mappedFile, ex);
+        }
+
+        LOG.info("Created an off-heap store of {} bytes in {}, slot sizes: {}",
+                capacityBytes, mappedFile == null ? "direct buffers" : mappedFile, Arrays.toString(slotSizes));
+    }
+
+    /**
+     * Applies reader to a read-only view of the payload of productId, the view must not be used after reader returns.
+     *
+     * @return the result of reader, or null if productId is not stored or its payload has expired
+     */
+    public <T> T read(int productId, Function<ByteBuffer, T> reader) {
+        lock.readLock().lock();
+        try {
+            int location = productId == Index.EMPTY ? Index.ABSENT : index.get(productId);
+            if (location == Index.ABSENT) {
+                misses.increment();
+                return null;
+            }
+
+            SlabClass slabClass = slabClasses[location >>> SLOT_BITS];
+            int slot = location & SLOT_MASK;
+            if (slabClass.isExpired(slot)) {
+                misses.increment();
+                return null;
+            }
+
+            // Racing readers may set the flag concurrently, they all set it to the same value
+            slabClass.referenced[slot] = true;
+            hits.increment();
+            return reader.apply(slabClass.view(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores payload for productId, replacing a stored payload and evicting others if its slab class is full.
+     *
+     * @return false if the payload is larger than the largest slot and was not stored
+     */
+    public boolean put(int productId, byte[] payload) {
+        Index.checkKey(productId);
+        int classIndex = classFor(payload.length);
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            if (classIndex < 0) {
+                return false;
+            }
+
+            SlabClass slabClass = slabClasses[classIndex];
+            int slot = slabClass.allocate();
+            slabClass.write(slot, productId, payload);
+            usedBytes += payload.length;
+            index.put(productId, (classIndex << SLOT_BITS) | slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        Index.checkKey(productId);
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the stored payloads, excluding the unused rest of their slots
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mappedFile != null) {
+            mappedFile.close();
+        }
+    }
+
+    private int classFor(int length) {
+        for (int i = 0; i < slabClasses.length; i++) {
+            if (length <= slabClasses[i].slotSize && slabClasses[i].slotCount > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeInternal(int productId) {
+        int location = index.remove(productId);
+        if (location != Index.ABSENT) {
+            SlabClass slabClass = slabClasses[location >>> SLOT_BITS];
+            int slot = location & SLOT_MASK;
+            usedBytes -= slabClass.lengths[slot];
+            slabClass.free(slot);
+        }
+    }
+
+    private int nowSeconds() {
+        return (int) ((System.currentTimeMillis() - startMillis) / 1000);
+    }
+
+    /**
+     * The slots of one size, with the productId, payload length, write time and referenced flag of every slot.
+     */
+    private final class SlabClass {
+
+        private final int slotSize;
+        private final int slotCount;
+        private final int slotsPerChunk;
+        private final ByteBuffer[] chunks;
+
+        private final int[] keys;
+        private final int[] lengths;
+        private final int[] writtenAtSeconds;
+        private final boolean[] referenced;
+
+        private final int[] freeSlots;
+        private int freeCount;
+        private int hand;
+
+        SlabClass(int slotSize, int slotCount, long fileOffset) throws IOException {
+            this.slotSize = slotSize;
+            this.slotCount = slotCount;
+            this.slotsPerChunk = Math.max(1, MAX_CHUNK_BYTES / slotSize);
+
+            int chunkCount = (slotCount + slotsPerChunk - 1) / slotsPerChunk;
+            this.chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                int chunkBytes = Math.min(slotsPerChunk, slotCount - i * slotsPerChunk) * slotSize;
+                chunks[i] = mappedFile == null
+                        ? ByteBuffer.allocateDirect(chunkBytes)
+                        : mappedFile.map(FileChannel.MapMode.READ_WRITE, fileOffset + (long) i * slotsPerChunk * slotSize, chunkBytes);
+            }
+
+            this.keys = new int[slotCount];
+            this.lengths = new int[slotCount];
+            this.writtenAtSeconds = new int[slotCount];
+            this.referenced = new boolean[slotCount];
+
+            // All slots are free, handed out from slot 0 upwards
+            this.freeSlots = new int[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                freeSlots[i] = slotCount - 1 - i;
+            }
+            this.freeCount = slotCount;
+        }
+
+        int allocate() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % slotCount;
+                if (referenced[slot] && !isExpired(slot)) {
+                    referenced[slot] = false;
+                } else {
+                    evictions.increment();
+                    index.remove(keys[slot]);
+                    usedBytes -= lengths[slot];
+                    return slot;
+                }
+            }
+        }
+
+        void free(int slot) {
+            keys[slot] = Index.EMPTY;
+            lengths[slot] = 0;
+            referenced[slot] = false;
+            freeSlots[freeCount++] = slot;
+        }
+
+        void write(int slot, int productId, byte[] payload) {
+            ByteBuffer buffer = chunks[slot / slotsPerChunk].duplicate();
+            buffer.position((slot % slotsPerChunk) * slotSize);
+            buffer.put(payload);
+
+            keys[slot] = productId;
+            lengths[slot] = payload.length;
+            writtenAtSeconds[slot] = nowSeconds();
+            referenced[slot] = false;
+        }
+
+        ByteBuffer view(int slot) {
+            ByteBuffer buffer = chunks[slot / slotsPerChunk].asReadOnlyBuffer();
+            int offset = (slot % slotsPerChunk) * slotSize;
+            buffer.limit(offset + lengths[slot]);
+            buffer.position(offset);
+            return buffer.slice();
+        }
+
+        boolean isExpired(int slot) {
+            return (nowSeconds() - writtenAtSeconds[slot]) * 1000L >= expireAfterWriteMillis;
+        }
+    }
+
+    /**
+     * Open addressing hash map from productId to location, using linear probing and backward shift deletion.
+     * Key 0 marks an empty slot and can't be used. Not thread safe.
+     */
+    private static final class Index {
+
+        static final int EMPTY = 0;
+        static final int ABSENT = -1;
+
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        Index(int expectedSize) {
+            allocate(Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int key) {
+            int slot = findSlot(key);
+            return keys[slot] == key ? values[slot] : ABSENT;
+        }
+
+        void put(int key, int value) {
+            int slot = findSlot(key);
+            boolean added = keys[slot] != key;
+            keys[slot] = key;
+            values[slot] = value;
+            if (added && ++size * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        int remove(int key) {
+            int slot = findSlot(key);
+            if (keys[slot] != key) {
+                return ABSENT;
+            }
+            int value = values[slot];
+            removeSlot(slot);
+            return value;
+        }
+
+        private int findSlot(int key) {
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        // Moves back the following entries of the probe sequence that may fill the gap, so lookups never stop too early
+        private void removeSlot(int gap) {
+            size--;
+            int slot = gap;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (keys[slot] == EMPTY) {
+                    break;
+                }
+                int ideal = hash(keys[slot]) & mask;
+                if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                    keys[gap] = keys[slot];
+                    values[gap] = values[slot];
+                    gap = slot;
+                }
+            }
+            keys[gap] = EMPTY;
+            values[gap] = 0;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(capacity);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = findSlot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        static void checkKey(int key) {
+            if (key == EMPTY) {
+                throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.microservices.composite.product.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.api.composite.product.ProductAggregate;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Bounded in-process cache of assembled product aggregates, keyed by productId.
+ *
+ * Entries are evicted by size and by time-to-live, and invalidated when events for the product
+ * are seen on the products, recommendations or reviews destinations. The time-to-live bounds the
+ * staleness of entries that were re-populated before a core service had applied an event.
+ *
+ * Every invalidation bumps the generation of the productId, and callers pass the generation they saw before
+ * reading from the core services to put, so an aggregate assembled from reads that started before an invalidation
+ * is never cached. Generations are kept per stripe of productIds, a collision only skips a put.
+ *
+ * Aggregates are serialized once when they are put, with the same ObjectMapper as the responses, into JSON and, if
+ * {@code gzip.enabled} and the JSON has at least {@code gzip.min-size} bytes, a gzip variant of it. Both are cached
+ * with an ETag of the productId and the ContentVersion of the core objects, so a cached aggregate can be
+ * written to a response as is, or answered with 304 Not Modified without copying it at all. The ETag is weak, since
+ * it is shared by the identity and gzip variants and by all instances, whose bodies differ in the serviceAddresses.
+ *
+ * The heap tier keeps the aggregates as objects next to their bytes in a Caffeine cache of at most
+ * {@code maximum-size} entries. The off-heap tier only keeps the ETag and the bytes, in an OffHeapAggregateStore
+ * of {@code off-heap.capacity-mb}.
+ */
+@Component
+public class ProductAggregateCache implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateCache.class);
+
+    private static final String CACHE_NAME = "productAggregates";
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final boolean enabled;
+
+    private final ObjectMapper mapper;
+
+    private final boolean gzipEnabled;
+
+    private final int gzipMinSize;
+
+    private final Cache<Integer, Entry> cache;
+
+    private final OffHeapAggregateStore offHeapStore;
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Autowired
+    public ProductAggregateCache(
+            MeterRegistry registry,
+            ObjectMapper mapper,
+            @Value("${app.product-composite.cache.enabled:true}") boolean enabled,
+            @Value("${app.product-composite.cache.tier:heap}") String tier,
+            @Value("${app.product-composite.cache.maximum-size:1000}") long maximumSize,
+            @Value("${app.product-composite.cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds,
+            @Value("${app.product-composite.cache.off-heap.capacity-mb:64}") long offHeapCapacityMb,
+            @Value("${app.product-composite.cache.off-heap.slot-sizes:1024,4096,16384}") int[] offHeapSlotSizes,
+            @Value("${app.product-composite.cache.off-heap.mapped-file:}") String offHeapMappedFile,
+            @Value("${app.product-composite.cache.gzip.enabled:true}") boolean gzipEnabled,
+            @Value("${app.product-composite.cache.gzip.min-size:1024}") int gzipMinSize) {
+
+        LOG.info("Creates a product aggregate cache, enabled: {}, tier: {}, maximumSize: {}, expireAfterWriteSeconds: {}, gzipEnabled: {}",
+                enabled, tier, maximumSize, expireAfterWriteSeconds, gzipEnabled);
+
+        this.enabled = enabled;
+        this.mapper = mapper;
+        this.gzipEnabled = gzipEnabled;
+        this.gzipMinSize = gzipMinSize;
+
+        if ("off-heap".equals(tier)) {
+            this.cache = null;
+            this.offHeapStore = new OffHeapAggregateStore(
+                    offHeapCapacityMb * 1024 * 1024,
+                    offHeapSlotSizes,
+                    TimeUnit.SECONDS.toMillis(expireAfterWriteSeconds),
+                    offHeapMappedFile.isEmpty() ? null : Paths.get(offHeapMappedFile));
+            monitor(registry, offHeapStore);
+
+        } else if ("heap".equals(tier)) {
+            this.offHeapStore = null;
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+
+        } else {
+            throw new IllegalArgumentException("Invalid cache tier: " + tier + ", expected heap or off-heap");
+        }
+    }
+
+    public ProductAggregate get(int productId) {
+        if (!enabled) {
+            return null;
+        }
+        if (offHeapStore == null) {
+            Entry entry = cache.getIfPresent(productId);
+            return entry == null ? null : entry.aggregate;
+        }
+        return offHeapStore.read(productId, this::deserialize);
+    }
+
+    /**
+     * Looks up the response for a cached aggregate. Its body is null if one of ifNoneMatch matches the ETag, otherwise
+     * the gzip variant if acceptsGzip and there is one, or else the JSON. The heap tier wraps the cached bytes, the
+     * off-heap tier copies them into a buffer of bufferFactory, neither creates the aggregate on the heap.
+     *
+     * @return the response, or null if the aggregate is not cached
+     */
+    public CachedResponse getResponse(int productId, List<String> ifNoneMatch, boolean acceptsGzip, DataBufferFactory bufferFactory) {
+        if (!enabled) {
+            return null;
+        }
+
+        if (offHeapStore == null) {
+            Entry entry = cache.getIfPresent(productId);
+            if (entry == null) {
+                return null;
+            }
+            if (matches(entry.eTag, ifNoneMatch)) {
+                return new CachedResponse(entry.eTag, null, false);
+            }
+            boolean gzip = acceptsGzip && entry.gzip != null;
+            return new CachedResponse(entry.eTag, bufferFactory.wrap(gzip ? entry.gzip : entry.json), gzip);
+        }
+
+        return offHeapStore.read(productId, payload -> {
+            String eTag = readETag(payload);
+            if (matches(eTag, ifNoneMatch)) {
+                return new CachedResponse(eTag, null, false);
+            }
+            int jsonLength = payload.getInt();
+            boolean gzip = acceptsGzip && payload.remaining() > jsonLength;
+            if (gzip) {
+                payload.position(payload.position() + jsonLength);
+            } else {
+                payload.limit(payload.position() + jsonLength);
+            }
+            return new CachedResponse(eTag, bufferFactory.allocateBuffer(payload.remaining()).write(payload), gzip);
+        });
+    }
+
+    /**
+     * @return the generation to pass to put for an aggregate assembled from reads that start after this call
+     */
+    public long generation(int productId) {
+        return generations.get(stripe(productId));
+    }
+
+    /**
+     * Caches the aggregate unless the productId was invalidated since generation was taken, contentVersion is the
+     * ContentVersion of the core objects it was assembled from.
+     *
+     * @return the ETag of the cached aggregate, or null if it was not cached
+     */
+    public String put(ProductAggregate aggregate, long contentVersion, long generation) {
+        if (!enabled) {
+            return null;
+        }
+
+        int productId = aggregate.getProductId();
+        if (generation(productId) != generation) {
+            LOG.debug("Skips caching the aggregate for productId: {}, it was invalidated while being assembled", productId);
+            return null;
+        }
+
+        Entry entry;
+        try {
+            byte[] json = mapper.writeValueAsBytes(aggregate);
+            byte[] gzip = gzipEnabled && json.length >= gzipMinSize ? gzip(json) : null;
+            entry = new Entry(aggregate, eTag(productId, contentVersion), json, gzip != null && gzip.length < json.length ? gzip : null);
+        } catch (IOException ex) {
+            LOG.warn("Failed to serialize the aggregate for productId: {}, error: {}", productId, ex.toString());
+            return null;
+        }
+
+        if (offHeapStore == null) {
+            cache.put(productId, entry);
+        } else if (!offHeapStore.put(productId, toPayload(entry))) {
+            LOG.debug("Aggregate for productId: {} is too large for the off-heap cache", productId);
+            return null;
+        }
+
+        // An invalidation between the check above and the put either removed the entry or is seen here
+        if (generation(productId) != generation) {
+            remove(productId);
+            return null;
+        }
+        return entry.eTag;
+    }
+
+    public void invalidate(int productId) {
+        LOG.debug("Invalidates cached aggregate for productId: {}", productId);
+        generations.incrementAndGet(stripe(productId));
+        remove(productId);
+    }
+
+    private void remove(int productId) {
+        if (offHeapStore == null) {
+            cache.invalidate(productId);
+        } else if (productId > 0) {
+            offHeapStore.remove(productId);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (offHeapStore != null) {
+            offHeapStore.close();
+        }
+    }
+
+    private ProductAggregate deserialize(ByteBuffer payload) {
+        readETag(payload);
+        int jsonLength = payload.getInt();
+        payload.limit(payload.position() + jsonLength);
+        try {
+            return mapper.readValue(new ByteBufferBackedInputStream(payload), ProductAggregate.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static int stripe(int productId) {
+        return Math.floorMod(productId, GENERATION_STRIPES);
+    }
+
+    static String eTag(int productId, long contentVersion) {
+        return WEAK_PREFIX + "\"" + productId + "-" + Long.toHexString(contentVersion) + "\"";
+    }
+
+    // If-None-Match uses the weak comparison, i.e. the W/ prefixes are ignored
+    static boolean matches(String eTag, List<String> ifNoneMatch) {
+        for (String tag : ifNoneMatch) {
+            if ("*".equals(tag) || opaqueTag(eTag).equals(opaqueTag(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith(WEAK_PREFIX) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json);
+        }
+        return bytes.toByteArray();
+    }
+
+    // The off-heap payload is the length and bytes of the ETag, the length and bytes of the JSON, and the gzip variant
+    private static byte[] toPayload(Entry entry) {
+        byte[] eTag = entry.eTag.getBytes(US_ASCII);
+        int gzipLength = entry.gzip == null ? 0 : entry.gzip.length;
+        ByteBuffer payload = ByteBuffer.allocate(Short.BYTES + eTag.length + Integer.BYTES + entry.json.length + gzipLength);
+        payload.putShort((short) eTag.length).put(eTag).putInt(entry.json.length).put(entry.json);
+        if (entry.gzip != null) {
+            payload.put(entry.gzip);
+        }
+        return payload.array();
+    }
+
+    private static String readETag(ByteBuffer payload) {
+        byte[] eTag = new byte[payload.getShort()];
+        payload.get(eTag);
+        return new String(eTag, US_ASCII);
+    }
+
+    // Registers the meters of CaffeineCacheMetrics that apply, so both tiers can be compared on the same dashboards
+    private static void monitor(MeterRegistry registry, OffHeapAggregateStore store) {
+        Gauge.builder("cache.size", store, OffHeapAggregateStore::size)
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries in this cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", store, OffHeapAggregateStore::hitCount)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("The number of times cache lookup methods have returned a cached value")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", store, OffHeapAggregateStore::missCount)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("The number of times cache lookup methods have returned an uncached value")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", store, OffHeapAggregateStore::evictionCount)
+                .tag("cache", CACHE_NAME)
+                .description("The number of times the cache was evicted")
+                .register(registry);
+        Gauge.builder("cache.offheap.used", store, OffHeapAggregateStore::usedBytes)
+                .tag("cache", CACHE_NAME)
+                .description("The bytes of the cached payloads outside the heap")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    /**
+     * A cached response, without a body if the request's If-None-Match matched the ETag.
+     */
+    public static final class CachedResponse {
+
+        private final String eTag;
+        private final DataBuffer body;
+        private final boolean gzip;
+
+        CachedResponse(String eTag, DataBuffer body, boolean gzip) {
+            this.eTag = eTag;
+            this.body = body;
+            this.gzip = gzip;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public DataBuffer getBody() {
+            return body;
+        }
+
+        public boolean isNotModified() {
+            return body == null;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+    }
+
+    private static final class Entry {
+
+        private final ProductAggregate aggregate;
+        private final String eTag;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        Entry(ProductAggregate aggregate, String eTag, byte[] json, byte[] gzip) {
+            this.aggregate = aggregate;
+            this.eTag = eTag;
+            this.json = json;
+            this.gzip = gzip;
+        }
+    }
+}
@@ -17,15 +17,19 @@ import org.springframework.web.client.HttpClientErrorException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.microservices.api.core.product.Product;
 import com.microservices.api.core.product.ProductService;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.recommendation.RecommendationService;
+import com.microservices.api.core.recommendation.RecommendationStatistics;
+import com.microservices.api.core.recommendation.SimilarProduct;
 import com.microservices.api.core.review.Review;
 import com.microservices.api.core.review.ReviewService;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.api.exceptions.NotFoundException;
+import com.microservices.api.exceptions.ServiceUnavailableException;
 import com.microservices.util.http.HttpErrorInfo;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -94,6 +98,20 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
                  .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
     }
 
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        String url = productServiceUrl + "?productIds=" + joinProductIds(productIds);
+        LOG.debug("Will call the getProducts API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Product.class)
+                .log()
+                .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+    }
+
     @Override
     public Mono<Void> deleteProduct(int productId) {
         sendMessage("products-out-0", new Event(DELETE, productId, null));
@@ -106,6 +124,7 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         return Mono.just(body);
     }
 
+    // Errors are passed on, the composite falls back to no recommendations and does not cache the aggregate
     @Override
     public Flux<Recommendation> getRecommendations(int productId) {
 
@@ -117,10 +136,99 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
                 .uri(url)
                 .retrieve()
                 .bodyToFlux(Recommendation.class)
+                .log();
+    }
+
+    // Errors are passed on, the composite falls back to no recommendations and does not cache the aggregate
+    @Override
+    public Flux<Recommendation> getRecommendationsByProductIds(List<Integer> productIds) {
+
+        String url = recommendationServiceUrl + "?productIds=" + joinProductIds(productIds);
+        LOG.debug("Will call the getRecommendationsByProductIds API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .log();
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsPage(int productId, int after, int limit) {
+
+        String url = recommendationServiceUrl + "?productId=" + productId + "&after=" + after + "&limit=" + limit;
+        LOG.debug("Will call the getRecommendationsPage API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .log()
+                .onErrorResume(error -> empty());
+    }
+
+    @Override
+    public Flux<Recommendation> getTopRecommendations(int productId, int k) {
+
+        String url = recommendationServiceUrl + "/top?productId=" + productId + "&k=" + k;
+        LOG.debug("Will call the getTopRecommendations API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Recommendation.class)
+                .log()
+                .onErrorResume(error -> empty());
+    }
+
+    @Override
+    public Flux<SimilarProduct> getSimilarProducts(int productId, int k) {
+
+        String url = recommendationServiceUrl + "/similar?productId=" + productId + "&k=" + k;
+        LOG.debug("Will call the getSimilarProducts API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(SimilarProduct.class)
                 .log()
                 .onErrorResume(error -> empty());
     }
 
+    @Override
+    public Mono<Long> countRecommendations(int productId) {
+
+        String url = recommendationServiceUrl + "/count?productId=" + productId;
+        LOG.debug("Will call the countRecommendations API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(Long.class)
+                .log()
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    @Override
+    public Mono<RecommendationStatistics> getRecommendationStatistics(int productId) {
+
+        String url = recommendationServiceUrl + "/statistics?productId=" + productId;
+        LOG.debug("Will call the getRecommendationStatistics API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(RecommendationStatistics.class)
+                .log()
+                .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+    }
+
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
         sendMessage("recommendations-out-0", new Event(DELETE, productId, null));
@@ -133,6 +241,7 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         return Mono.just(body);
     }
 
+    // Errors are passed on, the composite falls back to no reviews and does not cache the aggregate
     @Override
     public Flux<Review> getReviews(int productId) {
 
@@ -140,6 +249,35 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         LOG.debug("Will call the getReviews API on URL: {}", url);
 
 
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .log();
+    }
+
+    // Errors are passed on, the composite falls back to no reviews and does not cache the aggregate
+    @Override
+    public Flux<Review> getReviewsByProductIds(List<Integer> productIds) {
+
+        String url = reviewServiceUrl + "?productIds=" + joinProductIds(productIds);
+        LOG.debug("Will call the getReviewsByProductIds API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .log();
+    }
+
+    @Override
+    public Flux<Review> getReviewsPage(int productId, int after, int limit) {
+
+        String url = reviewServiceUrl + "?productId=" + productId + "&after=" + after + "&limit=" + limit;
+        LOG.debug("Will call the getReviewsPage API on URL: {}", url);
+
         return webClient
                 .get()
                 .uri(url)
@@ -149,6 +287,20 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
                 .onErrorResume(error -> empty());
     }
 
+    @Override
+    public Mono<Long> countReviews(int productId) {
+
+        String url = reviewServiceUrl + "/count?productId=" + productId;
+        LOG.debug("Will call the countReviews API on URL: {}", url);
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(Long.class)
+                .log()
+                .onErrorResume(error -> Mono.empty());
+    }
 
     @Override
     public Mono<Void> deleteReviews(int productId) {
@@ -177,6 +329,9 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
                 .log();
     }
 
+    private String joinProductIds(List<Integer> productIds) {
+        return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
 
     private void sendMessage(String bindingName, Event event) {
         Message message = MessageBuilder.withPayload(event)
@@ -201,6 +356,9 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
             case UNPROCESSABLE_ENTITY :
                 return new InvalidInputException(getErrorMessage(wcre));
 
+            case SERVICE_UNAVAILABLE:
+                return new ServiceUnavailableException(getErrorMessage(wcre));
+
             default:
                 LOG.warn("Got a unexpected HTTP error: {}, will rethrow it", wcre.getStatusCode());
                 LOG.warn("Error body: {}", wcre.getResponseBodyAsString());
@@ -1,35 +1,80 @@
 package com.microservices.composite.product.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import com.microservices.api.composite.product.*;
 import com.microservices.api.core.product.Product;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.review.Review;
+import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.api.exceptions.NotFoundException;
 import com.microservices.util.http.ServiceUtil;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import static com.microservices.composite.product.services.CachedAggregateWebFilter.ETAG_ATTRIBUTE;
+import static org.springframework.http.HttpStatus.*;
+
 @RestController
 public class ProductCompositeServiceImpl implements ProductCompositeService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeServiceImpl.class);
 
+    private static final String INTERNAL_ERROR_MESSAGE = "Failed to get the composite for the product";
+
     private final ServiceUtil serviceUtil;
     private ProductCompositeIntegration integration;
+    private final ProductAggregateCache cache;
+
+    private final ConcurrentMap<Integer, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+    private final Counter coalescedSubscribers;
+
+    private final int batchConcurrency;
+    private final int batchChunkSize;
+    private final int batchMaxSize;
+    private final int previewMaxSize;
 
     @Autowired
     public ProductCompositeServiceImpl(
-            ServiceUtil serviceUtil, ProductCompositeIntegration integration) {
+            ServiceUtil serviceUtil,
+            ProductCompositeIntegration integration,
+            ProductAggregateCache cache,
+            MeterRegistry registry,
+            @Value("${app.product-composite.batch.concurrency:8}") int batchConcurrency,
+            @Value("${app.product-composite.batch.chunk-size:10}") int batchChunkSize,
+            @Value("${app.product-composite.batch.max-size:100}") int batchMaxSize,
+            @Value("${app.product-composite.preview.max-size:100}") int previewMaxSize) {
 
         this.serviceUtil = serviceUtil;
         this.integration = integration;
+        this.cache = cache;
+        this.batchConcurrency = batchConcurrency;
+        this.batchChunkSize = batchChunkSize;
+        this.batchMaxSize = batchMaxSize;
+        this.previewMaxSize = previewMaxSize;
+        this.coalescedSubscribers = Counter.builder("product.composite.coalesced.subscribers")
+                .description("Number of getProduct requests that joined an already in-flight request for the same productId")
+                .register(registry);
     }
 
     @Override
@@ -39,6 +84,8 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
             LOG.debug("createCompositeProduct: creates a new composite entity for productId: {}", body.getProductId());
 
+            cache.invalidate(body.getProductId());
+
             Product product = new Product(body.getProductId(), body.getName(), body.getWeight(), null);
             integration.createProduct(product);
 
@@ -79,14 +126,134 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
     @Override
     public Mono<ProductAggregate> getProduct(int productId) {
+
+        ProductAggregate cachedAggregate = cache.get(productId);
+        if (cachedAggregate != null) {
+            LOG.debug("getCompositeProduct: found a cached aggregate for productId: {}", productId);
+            return Mono.just(cachedAggregate);
+        }
+
+        // A request that started before the last invalidation of the product is not joined but replaced
+        long generation = cache.generation(productId);
+        while (true) {
+            InFlightRequest inFlightRequest = inFlightRequests.get(productId);
+
+            if (inFlightRequest != null && inFlightRequest.generation == generation) {
+                LOG.debug("getCompositeProduct: joins an in-flight request for productId: {}", productId);
+                coalescedSubscribers.increment();
+                return withETag(inFlightRequest.aggregate);
+            }
+
+            InFlightRequest newRequest = new InFlightRequest(productId, generation);
+            boolean registered = (inFlightRequest == null)
+                    ? inFlightRequests.putIfAbsent(productId, newRequest) == null
+                    : inFlightRequests.replace(productId, inFlightRequest, newRequest);
+            if (registered) {
+                return withETag(newRequest.aggregate);
+            }
+        }
+    }
+
+    // Hands the ETag of the cached aggregate to CachedAggregateWebFilter through an attribute of the exchange in the
+    // context, if any, so the response gets the ETag of the aggregate in its body, and none if it was not cached
+    private Mono<ProductAggregate> withETag(Mono<AssembledAggregate> assembled) {
+        return Mono.deferContextual(context -> assembled
+                .doOnNext(a -> {
+                    Optional<ServerWebExchange> exchange = context.getOrEmpty(ServerWebExchange.class);
+                    if (a.eTag != null) {
+                        exchange.ifPresent(e -> e.getAttributes().put(ETAG_ATTRIBUTE, a.eTag));
+                    }
+                })
+                .map(a -> a.aggregate));
+    }
+
+    /**
+     * Asks the core services only for the first {@code preview} recommendations and reviews, and for their counts.
+     * Previews are neither cached nor coalesced, since they differ from the full aggregate.
+     */
+    @Override
+    public Mono<ProductAggregate> getProductPreview(int productId, int preview) {
+
+        if (preview < 1 || preview > previewMaxSize) {
+            throw new InvalidInputException("Invalid preview: " + preview + ", expected 1 to " + previewMaxSize);
+        }
+
+        LOG.debug("getCompositeProductPreview: gets a preview with {} recommendations and reviews for productId: {}", preview, productId);
+
         return Mono.zip(
-                values -> createProductAggregate((Product) values[0],
+                values -> createProductAggregatePreview((Product) values[0],
                         (List<Recommendation>) values[1],
                         (List<Review>) values[2],
-                        serviceUtil.getServiceAddress()),
+                        (Optional<Long>) values[3],
+                        (Optional<Long>) values[4]),
                         integration.getProduct(productId),
-                        integration.getRecommendations(productId).collectList(),
-                        integration.getReviews(productId).collectList())
+                        integration.getRecommendationsPage(productId, 0, preview).collectList(),
+                        integration.getReviewsPage(productId, 0, preview).collectList(),
+                        integration.countRecommendations(productId).map(Optional::of).defaultIfEmpty(Optional.empty()),
+                        integration.countReviews(productId).map(Optional::of).defaultIfEmpty(Optional.empty()))
+                .doOnError(ex -> LOG.warn("getCompositeProductPreview failed: {}", ex.toString()))
+                .log();
+    }
+
+    @Override
+    public Flux<ProductAggregateResult> getProducts(List<Integer> productIds) {
+
+        if (productIds == null || productIds.isEmpty()) {
+            throw new InvalidInputException("No product ids specified");
+        }
+
+        if (productIds.size() > batchMaxSize) {
+            throw new InvalidInputException("Too many product ids: " + productIds.size() + ", max is: " + batchMaxSize);
+        }
+
+        LOG.debug("getCompositeProducts: gets composites for {} product ids with concurrency: {}", productIds.size(), batchConcurrency);
+
+        List<ProductAggregateResult> knownResults = new ArrayList<>();
+        List<Integer> productIdsToFetch = new ArrayList<>();
+
+        for (Integer productId : new LinkedHashSet<>(productIds)) {
+            if (productId == null || productId < 1) {
+                knownResults.add(new ProductAggregateResult(productId == null ? 0 : productId,
+                        UNPROCESSABLE_ENTITY.value(), "Invalid productId: " + productId, null));
+                continue;
+            }
+
+            ProductAggregate cachedAggregate = cache.get(productId);
+            if (cachedAggregate != null) {
+                knownResults.add(new ProductAggregateResult(productId, OK.value(), null, cachedAggregate));
+            } else {
+                productIdsToFetch.add(productId);
+            }
+        }
+
+        return Flux.fromIterable(knownResults)
+                .concatWith(Flux.fromIterable(productIdsToFetch)
+                        .buffer(batchChunkSize)
+                        .flatMap(this::fetchProductAggregates, batchConcurrency));
+    }
+
+    @Override
+    public Flux<ProductAggregateResult> getProductBatch(List<Integer> productIds) {
+        return getProducts(productIds);
+    }
+
+    /**
+     * Fans out to the core services. Concurrent callers for the same productId share one
+     * subscription to the returned Mono, see {@link #getProduct(int)}.
+     */
+    private Mono<AssembledAggregate> fetchProductAggregate(int productId, long generation) {
+        return Mono.defer(() -> {
+                    AtomicBoolean fellBack = new AtomicBoolean();
+                    return Mono.zip(
+                            values -> createCachedProductAggregate((Product) values[0],
+                                    (List<Recommendation>) values[1],
+                                    (List<Review>) values[2],
+                                    generation,
+                                    !fellBack.get()),
+                                    integration.getProduct(productId),
+                                    fallBackToEmpty(integration.getRecommendations(productId), fellBack).collectList(),
+                                    fallBackToEmpty(integration.getReviews(productId), fellBack).collectList());
+                })
                 .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString()))
                 .log();
     }
@@ -97,6 +264,8 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
             LOG.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
 
+            cache.invalidate(productId);
+
             integration.deleteProduct(productId);
             integration.deleteRecommendations(productId);
             integration.deleteReviews(productId);
@@ -112,6 +281,95 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     }
 
 
+    /**
+     * Assembles the composites for a chunk of product ids with one call per core service.
+     */
+    private Flux<ProductAggregateResult> fetchProductAggregates(List<Integer> productIds) {
+        Map<Integer, Long> generations = new HashMap<>();
+        AtomicBoolean fellBack = new AtomicBoolean();
+        return Mono.defer(() -> {
+                    productIds.forEach(productId -> generations.put(productId, cache.generation(productId)));
+                    return Mono.zip(
+                            integration.getProducts(productIds).collectMap(Product::getProductId),
+                            fallBackToEmpty(integration.getRecommendationsByProductIds(productIds), fellBack).collectMultimap(Recommendation::getProductId),
+                            fallBackToEmpty(integration.getReviewsByProductIds(productIds), fellBack).collectMultimap(Review::getProductId));
+                })
+                .flatMapIterable(values -> productIds.stream()
+                        .map(productId -> {
+                            Product product = values.getT1().get(productId);
+                            if (product == null) {
+                                return new ProductAggregateResult(productId, NOT_FOUND.value(), "No product found for productId: " + productId, null);
+                            }
+
+                            ProductAggregate aggregate = createCachedProductAggregate(product,
+                                    toList(values.getT2().get(productId)),
+                                    toList(values.getT3().get(productId)),
+                                    generations.get(productId),
+                                    !fellBack.get()).aggregate;
+                            return new ProductAggregateResult(productId, OK.value(), null, aggregate);
+                        })
+                        .collect(Collectors.toList()))
+                .onErrorResume(ex -> Flux.fromIterable(productIds).map(productId -> createErrorResult(productId, ex)));
+    }
+
+    /**
+     * Falls back to no values if the core service fails, e.g. is down or times out, and records that in
+     * {@code fellBack}, so the incomplete aggregate is served but not cached.
+     */
+    private <T> Flux<T> fallBackToEmpty(Flux<T> values, AtomicBoolean fellBack) {
+        return values.onErrorResume(error -> {
+            LOG.warn("A core service failed, the aggregate is served without its values and not cached: {}", error.toString());
+            fellBack.set(true);
+            return Flux.empty();
+        });
+    }
+
+    private <T> List<T> toList(Collection<T> values) {
+        return (values == null) ? Collections.emptyList() : new ArrayList<>(values);
+    }
+
+    private ProductAggregateResult createErrorResult(int productId, Throwable ex) {
+
+        if (ex instanceof NotFoundException) {
+            return new ProductAggregateResult(productId, NOT_FOUND.value(), ex.getMessage(), null);
+
+        } else if (ex instanceof InvalidInputException) {
+            return new ProductAggregateResult(productId, UNPROCESSABLE_ENTITY.value(), ex.getMessage(), null);
+
+        } else {
+            // The detail of other errors stays in the log, it may expose internals of the core services
+            LOG.warn("getCompositeProducts failed for productId: {}, error: {}", productId, ex.toString());
+            return new ProductAggregateResult(productId, INTERNAL_SERVER_ERROR.value(), INTERNAL_ERROR_MESSAGE, null);
+        }
+    }
+
+    // Counts are null if they could not be retrieved from the core service
+    private ProductAggregate createProductAggregatePreview(
+            Product product,
+            List<Recommendation> recommendations,
+            List<Review> reviews,
+            Optional<Long> recommendationCount,
+            Optional<Long> reviewCount) {
+
+        ProductAggregate aggregate = createProductAggregate(product, recommendations, reviews, serviceUtil.getServiceAddress());
+
+        return new ProductAggregate(aggregate.getProductId(), aggregate.getName(), aggregate.getWeight(),
+                aggregate.getRecommendations(), aggregate.getReviews(), aggregate.getServiceAddresses(),
+                recommendationCount.orElse(null), reviewCount.orElse(null));
+    }
+
+    private AssembledAggregate createCachedProductAggregate(
+            Product product,
+            List<Recommendation> recommendations,
+            List<Review> reviews,
+            long generation,
+            boolean cacheable) {
+
+        ProductAggregate aggregate = createProductAggregate(product, recommendations, reviews, serviceUtil.getServiceAddress());
+        String eTag = cacheable ? cache.put(aggregate, ContentVersion.of(product, recommendations, reviews), generation) : null;
+        return new AssembledAggregate(aggregate, eTag);
+    }
+
     private ProductAggregate createProductAggregate(
             Product product,
             List<Recommendation> recommendations,
@@ -143,4 +401,35 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
         return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, serviceAddresses);
     }
+
+    /**
+     * An assembled aggregate with the ETag it was cached with, or null if it was not cached.
+     */
+    private static final class AssembledAggregate {
+
+        private final ProductAggregate aggregate;
+        private final String eTag;
+
+        AssembledAggregate(ProductAggregate aggregate, String eTag) {
+            this.aggregate = aggregate;
+            this.eTag = eTag;
+        }
+    }
+
+    /**
+     * A shared fetch of the aggregate for a productId, with the cache generation seen before it started.
+     * It removes itself from inFlightRequests when it completes, unless a newer request replaced it.
+     */
+    private final class InFlightRequest {
+
+        private final long generation;
+        private final Mono<AssembledAggregate> aggregate;
+
+        InFlightRequest(int productId, long generation) {
+            this.generation = generation;
+            this.aggregate = fetchProductAggregate(productId, generation)
+                    .doFinally(signal -> inFlightRequests.remove(productId, this))
+                    .cache();
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package com.microservices.composite.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservices.api.composite.product.ProductAggregate;
+import com.microservices.api.composite.product.RecommendationSummary;
+import com.microservices.api.composite.product.ReviewSummary;
+import com.microservices.api.composite.product.ServiceAddresses;
+import com.microservices.composite.product.services.ProductAggregateCache;
+import com.microservices.composite.product.services.ProductAggregateCache.CachedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares the heap use and GC time of the heap and off-heap tiers of the aggregate cache with a working set of
+ * {@code benchmark.products} aggregates, one million by default. The off-heap tier maps its buffers from a file,
+ * so it doesn't need a larger -XX:MaxDirectMemorySize. Run it with the benchmark task, which gives the tests a 2 GB
+ * heap since the heap tier needs about 1.5 GB for one million aggregates and their JSON, e.g.
+ * {@code ./gradlew :microservices:product-composite-service:benchmark -Dbenchmark.products=1000000}.
+ *
+ * No results are recorded yet, so the off-heap tier is not known to use less heap or GC time than the heap tier.
+ * Both tiers log their fill time, the heap used by the cache, and the GC collections and time during the fill and
+ * the reads, with the JDK and GC of the run. Record them here.
+ */
+@Tag("benchmark")
+public class AggregateCacheBenchmarkTests {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AggregateCacheBenchmarkTests.class);
+
+	private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000_000);
+
+	private static final int READS = 5 * PRODUCTS;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void heapTier() throws IOException {
+		run("heap", newCache("heap", ""));
+	}
+
+	@Test
+	public void offHeapTier(@TempDir Path tempDir) throws IOException {
+		run("off-heap", newCache("off-heap", tempDir.resolve("aggregates").toString()));
+	}
+
+	private ProductAggregateCache newCache(String tier, String mappedFile) {
+		// Sized to hold the whole working set in both tiers, 1000 bytes per slot is enough for the aggregates below
+		long capacityMb = (long) PRODUCTS * 1000 / (1024 * 1024) + 1;
+		return new ProductAggregateCache(new SimpleMeterRegistry(), mapper, true, tier, PRODUCTS, 3600, capacityMb, new int[] {1000}, mappedFile, false, 0);
+	}
+
+	private void run(String tier, ProductAggregateCache cache) throws IOException {
+		try {
+			long heapBefore = usedHeapAfterGc();
+
+			long gcMillisBefore = gcMillis();
+			long gcCountBefore = gcCount();
+			long start = System.nanoTime();
+			for (int productId = 1; productId <= PRODUCTS; productId++) {
+				cache.put(aggregate(productId), productId, cache.generation(productId));
+			}
+			long fillMillis = (System.nanoTime() - start) / 1_000_000;
+			long fillGcCount = gcCount() - gcCountBefore;
+			long fillGcMillis = gcMillis() - gcMillisBefore;
+			long heapAfterFill = usedHeapAfterGc();
+
+			gcMillisBefore = gcMillis();
+			gcCountBefore = gcCount();
+			Random random = new Random(42);
+			DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+			start = System.nanoTime();
+			for (int i = 0; i < READS; i++) {
+				int productId = 1 + random.nextInt(PRODUCTS);
+				// The way the web filter serves a hit, the off-heap tier copies the JSON into a response buffer
+				CachedResponse response = cache.getResponse(productId, emptyList(), false, bufferFactory);
+				assertNotNull(response);
+				DataBufferUtils.release(response.getBody());
+			}
+			long readMillis = (System.nanoTime() - start) / 1_000_000;
+
+			LOG.info("JDK: {} {}, GC: {}, tier: {}, products: {}, fill: {} ms, GC during fill: {} collections, {} ms, heap used by the cache: {} MB, {} reads: {} ms, GC during reads: {} collections, {} ms",
+					System.getProperty("java.vm.name"), System.getProperty("java.version"), gcNames(), tier, PRODUCTS, fillMillis, fillGcCount, fillGcMillis, (heapAfterFill - heapBefore) / (1024 * 1024),
+					READS, readMillis, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	private ProductAggregate aggregate(int productId) {
+		return new ProductAggregate(
+				productId,
+				"Product name " + productId,
+				productId % 100,
+				singletonList(new RecommendationSummary(1, "Recommendation author", 3, "Recommendation content for product " + productId)),
+				singletonList(new ReviewSummary(1, "Review author", "Review subject", "Review content for product " + productId)),
+				new ServiceAddresses("composite:8080", "product:8080", "review:8080", "recommendation:8080"));
+	}
+
+	private long usedHeapAfterGc() {
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private String gcNames() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().map(GarbageCollectorMXBean::getName).collect(Collectors.joining(", "));
+	}
+
+	private long gcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+	}
+
+	private long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+	}
+}
@@ -0,0 +1,189 @@
+package com.microservices.composite.product;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.microservices.composite.product.services.OffHeapAggregateStore;
+import com.microservices.composite.product.services.ProductAggregateCache;
+import com.microservices.composite.product.services.ProductCompositeIntegration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.DELETE;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"app.product-composite.cache.tier=off-heap",
+		"app.product-composite.cache.off-heap.capacity-mb=1",
+		"app.product-composite.cache.off-heap.slot-sizes=512,2048"})
+public class OffHeapAggregateCacheTests {
+
+	private static final int PRODUCT_ID = 1;
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductAggregateCache cache;
+
+	@MockBean
+	private ProductCompositeIntegration compositeIntegration;
+
+	@Autowired
+	@Qualifier("cacheInvalidator")
+	private Consumer<Event<Integer, Object>> cacheInvalidator = null;
+
+	@BeforeEach
+	public void setUp() {
+
+		cache.invalidate(PRODUCT_ID);
+
+		when(compositeIntegration.getProduct(PRODUCT_ID))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID))
+				.thenReturn(Flux.fromIterable(singletonList(new Recommendation(PRODUCT_ID, 1, "author", 1, "content", "mock address"))));
+
+		when(compositeIntegration.getReviews(PRODUCT_ID))
+				.thenReturn(Flux.fromIterable(singletonList(new Review(PRODUCT_ID, 1, "author", "subject", "content", "mock address"))));
+	}
+
+	@Test
+	public void getProductIsServedFromOffHeapCache() {
+
+		String fetched = getProduct();
+		String cached = getProduct();
+
+		assertEquals(fetched, cached);
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID);
+		assertEquals(PRODUCT_ID, cache.get(PRODUCT_ID).getProductId());
+		assertEquals(1, cache.get(PRODUCT_ID).getReviews().size());
+
+		cacheInvalidator.accept(new Event(DELETE, PRODUCT_ID, null));
+		assertNull(cache.get(PRODUCT_ID));
+
+		assertEquals(fetched, getProduct());
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID);
+	}
+
+	@Test
+	public void getProductAnswersIfNoneMatchFromOffHeapCache() {
+
+		String eTag = client.get()
+				.uri("/product-composite/" + PRODUCT_ID)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.returnResult()
+				.getResponseHeaders().getETag();
+		assertNotNull(eTag);
+
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID)
+				.header(IF_NONE_MATCH, eTag)
+				.exchange()
+				.expectStatus().isEqualTo(NOT_MODIFIED)
+				.expectHeader().valueEquals(ETAG, eTag)
+				.expectBody().isEmpty();
+
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID);
+	}
+
+	@Test
+	public void clockEvictsEntriesNotReadSinceLastPass() throws IOException {
+
+		try (OffHeapAggregateStore store = new OffHeapAggregateStore(4 * 64, new int[] {64}, 60_000, null)) {
+			for (int productId = 1; productId <= 4; productId++) {
+				assertTrue(store.put(productId, payload(productId, 64)));
+			}
+			read(store, 1);
+			read(store, 2);
+			read(store, 3);
+
+			// The hand clears the flags of 1, 2 and 3, and evicts 4
+			store.put(5, payload(5, 10));
+			assertNull(read(store, 4));
+			assertEquals("5", read(store, 5).trim());
+
+			// 1 was not read since the hand cleared its flag
+			store.put(6, payload(6, 10));
+			assertNull(read(store, 1));
+			assertEquals("2", read(store, 2).trim());
+
+			assertEquals(4, store.size());
+			assertEquals(2, store.evictionCount());
+		}
+	}
+
+	@Test
+	public void payloadsLargerThanTheLargestSlotAreNotStored() throws IOException {
+
+		try (OffHeapAggregateStore store = new OffHeapAggregateStore(2 * 64 + 2 * 128, new int[] {64, 128}, 60_000, null)) {
+			assertTrue(store.put(1, payload(1, 100)));
+			assertEquals(100, store.usedBytes());
+
+			// A replacement that is too large drops the stale payload
+			assertFalse(store.put(1, payload(1, 129)));
+			assertNull(read(store, 1));
+			assertEquals(0, store.usedBytes());
+		}
+	}
+
+	@Test
+	public void storeInMappedFile(@TempDir Path tempDir) throws IOException {
+
+		try (OffHeapAggregateStore store = new OffHeapAggregateStore(1024 * 1024, new int[] {512}, 60_000, tempDir.resolve("aggregates"))) {
+			for (int productId = 1; productId <= 100; productId++) {
+				store.put(productId, payload(productId, 500));
+			}
+			for (int productId = 1; productId <= 100; productId++) {
+				assertEquals(String.valueOf(productId), read(store, productId).trim());
+			}
+		}
+	}
+
+	private String getProduct() {
+		return client.get()
+				.uri("/product-composite/" + PRODUCT_ID)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody(String.class)
+				.returnResult()
+				.getResponseBody();
+	}
+
+	// The productId padded with spaces to length bytes
+	private byte[] payload(int productId, int length) {
+		return String.format("%-" + length + "d", productId).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private String read(OffHeapAggregateStore store, int productId) {
+		return store.read(productId, payload -> StandardCharsets.US_ASCII.decode(payload).toString());
+	}
+}
@@ -1,24 +1,51 @@
 package com.microservices.composite.product;
 
+import com.microservices.api.composite.product.ProductAggregate;
 import com.microservices.api.core.product.Product;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.api.exceptions.NotFoundException;
+import com.microservices.composite.product.services.ProductAggregateCache;
 import com.microservices.composite.product.services.ProductCompositeIntegration;
+import com.microservices.composite.product.services.ProductCompositeServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.StreamUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static com.microservices.api.event.Event.Type.DELETE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
@@ -28,6 +55,16 @@ public class ProductCompositeServiceApplicationTests {
 	private static final int PRODUCT_ID_OK = 1;
 	private static final int PRODUCT_ID_NOT_FOUND = 2;
 	private static final int PRODUCT_ID_INVALID = 3;
+	private static final int PRODUCT_ID_CACHED = 4;
+	private static final int PRODUCT_ID_COALESCED = 5;
+	private static final int PRODUCT_ID_BATCH_OK = 6;
+	private static final int PRODUCT_ID_BATCH_NOT_FOUND = 7;
+	private static final int PRODUCT_ID_BATCH_POST = 8;
+	private static final int PRODUCT_ID_PREVIEW = 9;
+	private static final int PRODUCT_ID_CONDITIONAL = 10;
+	private static final int PRODUCT_ID_INVALIDATED = 11;
+	private static final int PRODUCT_ID_BATCH_ERROR = 12;
+	private static final int PRODUCT_ID_REVIEWS_FAILED = 13;
 
 	@Autowired
 	private WebTestClient client;
@@ -35,6 +72,16 @@ public class ProductCompositeServiceApplicationTests {
 	@MockBean
 	private ProductCompositeIntegration compositeIntegration;
 
+	@Autowired
+	private ProductCompositeServiceImpl compositeService;
+
+	@Autowired
+	private ProductAggregateCache cache;
+
+	@Autowired
+	@Qualifier("cacheInvalidator")
+	private Consumer<Event<Integer, Object>> cacheInvalidator = null;
+
 	@BeforeEach
 	public void setUp() {
 
@@ -47,6 +94,86 @@ public class ProductCompositeServiceApplicationTests {
 		when(compositeIntegration.getReviews(PRODUCT_ID_OK))
 				.thenReturn(Flux.fromIterable(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"))));
 
+		when(compositeIntegration.getProduct(PRODUCT_ID_CACHED))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_COALESCED))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_COALESCED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_COALESCED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_COALESCED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProducts(asList(PRODUCT_ID_BATCH_OK, PRODUCT_ID_BATCH_NOT_FOUND)))
+				.thenReturn(Flux.just(new Product(PRODUCT_ID_BATCH_OK, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendationsByProductIds(asList(PRODUCT_ID_BATCH_OK, PRODUCT_ID_BATCH_NOT_FOUND)))
+				.thenReturn(Flux.just(new Recommendation(PRODUCT_ID_BATCH_OK, 1, "author", 1, "content", "mock address")));
+
+		when(compositeIntegration.getReviewsByProductIds(asList(PRODUCT_ID_BATCH_OK, PRODUCT_ID_BATCH_NOT_FOUND)))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_BATCH_OK, 1, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.getProducts(singletonList(PRODUCT_ID_BATCH_POST)))
+				.thenReturn(Flux.just(new Product(PRODUCT_ID_BATCH_POST, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendationsByProductIds(singletonList(PRODUCT_ID_BATCH_POST))).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviewsByProductIds(singletonList(PRODUCT_ID_BATCH_POST))).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_PREVIEW))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_PREVIEW, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendationsPage(PRODUCT_ID_PREVIEW, 0, 2))
+				.thenReturn(Flux.just(
+						new Recommendation(PRODUCT_ID_PREVIEW, 1, "author", 1, "content", "mock address"),
+						new Recommendation(PRODUCT_ID_PREVIEW, 2, "author", 1, "content", "mock address")));
+
+		when(compositeIntegration.getReviewsPage(PRODUCT_ID_PREVIEW, 0, 2))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_PREVIEW, 1, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.countRecommendations(PRODUCT_ID_PREVIEW)).thenReturn(Mono.just(5L));
+
+		when(compositeIntegration.countReviews(PRODUCT_ID_PREVIEW)).thenReturn(Mono.empty());
+
+		// Long enough for the gzip variant to be cached
+		when(compositeIntegration.getProduct(PRODUCT_ID_CONDITIONAL))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_CONDITIONAL, String.join("", nCopies(200, "name ")), 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_CONDITIONAL)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_CONDITIONAL))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_CONDITIONAL, 1, "author", "subject", "content", "mock address")));
+
+		// The event for the product is seen while its aggregate is being assembled
+		when(compositeIntegration.getProduct(PRODUCT_ID_INVALIDATED))
+				.thenReturn(Mono.fromCallable(() -> {
+					cacheInvalidator.accept(new Event(DELETE, PRODUCT_ID_INVALIDATED, null));
+					return new Product(PRODUCT_ID_INVALIDATED, "name", 1, "mock-address");
+				}));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_INVALIDATED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_INVALIDATED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProducts(singletonList(PRODUCT_ID_BATCH_ERROR)))
+				.thenReturn(Flux.error(new IllegalStateException("Connection refused: product:7001")));
+
+		when(compositeIntegration.getRecommendationsByProductIds(singletonList(PRODUCT_ID_BATCH_ERROR))).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviewsByProductIds(singletonList(PRODUCT_ID_BATCH_ERROR))).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProduct(PRODUCT_ID_REVIEWS_FAILED))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_REVIEWS_FAILED, "name", 1, "mock-address")));
+
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_REVIEWS_FAILED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getReviews(PRODUCT_ID_REVIEWS_FAILED))
+				.thenReturn(Flux.error(new IllegalStateException("Connection refused: review:8080")));
+
 		when(compositeIntegration.getProduct(PRODUCT_ID_NOT_FOUND)).thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
 
 		when(compositeIntegration.getProduct(PRODUCT_ID_INVALID)).thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
@@ -65,6 +192,160 @@ public class ProductCompositeServiceApplicationTests {
 				.jsonPath("$.reviews.length()").isEqualTo(1);
 	}
 
+	@Test
+	public void getProductIsCachedUntilInvalidated() {
+
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_CACHED);
+
+		cacheInvalidator.accept(new Event(DELETE, PRODUCT_ID_CACHED, null));
+
+		getAndVerifyProduct(PRODUCT_ID_CACHED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_CACHED);
+	}
+
+	@Test
+	public void getProductIsNotCachedIfACoreServiceFailed() {
+
+		getAndVerifyProduct(PRODUCT_ID_REVIEWS_FAILED, OK).jsonPath("$.reviews.length()").isEqualTo(0);
+		assertNull(cache.get(PRODUCT_ID_REVIEWS_FAILED));
+
+		assertNull(getProduct(PRODUCT_ID_REVIEWS_FAILED, new HttpHeaders(), OK).getResponseHeaders().getETag());
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_REVIEWS_FAILED);
+		verify(compositeIntegration, times(2)).getReviews(PRODUCT_ID_REVIEWS_FAILED);
+	}
+
+	@Test
+	public void getProductAnswersIfNoneMatchWithNotModified() throws IOException {
+
+		cacheInvalidator.accept(new Event(DELETE, PRODUCT_ID_CONDITIONAL, null));
+
+		EntityExchangeResult<byte[]> fetched = getProduct(PRODUCT_ID_CONDITIONAL, new HttpHeaders(), OK);
+		String eTag = fetched.getResponseHeaders().getETag();
+		assertNotNull(eTag);
+		assertTrue(eTag.startsWith("W/"));
+		assertEquals(singletonList(ACCEPT_ENCODING), fetched.getResponseHeaders().getVary());
+
+		HttpHeaders ifNoneMatch = new HttpHeaders();
+		ifNoneMatch.setIfNoneMatch(eTag);
+		assertNull(getProduct(PRODUCT_ID_CONDITIONAL, ifNoneMatch, NOT_MODIFIED).getResponseBody());
+
+		HttpHeaders acceptGzip = new HttpHeaders();
+		acceptGzip.set(ACCEPT_ENCODING, "gzip");
+		EntityExchangeResult<byte[]> compressed = getProduct(PRODUCT_ID_CONDITIONAL, acceptGzip, OK);
+		assertEquals("gzip", compressed.getResponseHeaders().getFirst(CONTENT_ENCODING));
+		assertEquals(eTag, compressed.getResponseHeaders().getETag());
+		assertArrayEquals(fetched.getResponseBody(), gunzip(compressed.getResponseBody()));
+
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_CONDITIONAL);
+
+		// A review deleted and re-created with other content keeps its version, but changes the ETag
+		when(compositeIntegration.getReviews(PRODUCT_ID_CONDITIONAL))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_CONDITIONAL, 1, "author", "subject", "new content", "mock address")));
+		cacheInvalidator.accept(new Event(DELETE, PRODUCT_ID_CONDITIONAL, null));
+
+		EntityExchangeResult<byte[]> refetched = getProduct(PRODUCT_ID_CONDITIONAL, ifNoneMatch, OK);
+		assertNotEquals(eTag, refetched.getResponseHeaders().getETag());
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_CONDITIONAL);
+	}
+
+	@Test
+	public void getProductDoesNotCacheAggregatesInvalidatedWhileAssembled() {
+
+		getAndVerifyProduct(PRODUCT_ID_INVALIDATED, OK).jsonPath("$.productId").isEqualTo(PRODUCT_ID_INVALIDATED);
+		assertNull(getProduct(PRODUCT_ID_INVALIDATED, new HttpHeaders(), OK).getResponseHeaders().getETag());
+		verify(compositeIntegration, times(2)).getProduct(PRODUCT_ID_INVALIDATED);
+	}
+
+	@Test
+	public void getProductCoalescesConcurrentRequests() {
+
+		Mono<ProductAggregate> first = compositeService.getProduct(PRODUCT_ID_COALESCED);
+		Mono<ProductAggregate> second = compositeService.getProduct(PRODUCT_ID_COALESCED);
+
+		Tuple2<ProductAggregate, ProductAggregate> result = Mono.zip(first, second).block();
+
+		assertEquals(PRODUCT_ID_COALESCED, result.getT1().getProductId());
+		assertEquals(PRODUCT_ID_COALESCED, result.getT2().getProductId());
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_COALESCED);
+	}
+
+	@Test
+	public void getProductsReportsErrorsPerEntry() {
+
+		client.get()
+				.uri("/product-composite?ids=" + PRODUCT_ID_BATCH_OK + "," + PRODUCT_ID_BATCH_NOT_FOUND + "," + PRODUCT_ID_BATCH_OK)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[?(@.productId == " + PRODUCT_ID_BATCH_OK + ")].status").isEqualTo(OK.value())
+				.jsonPath("$[?(@.productId == " + PRODUCT_ID_BATCH_OK + ")].product.recommendations.length()").isEqualTo(1)
+				.jsonPath("$[?(@.productId == " + PRODUCT_ID_BATCH_OK + ")].product.reviews.length()").isEqualTo(1)
+				.jsonPath("$[?(@.productId == " + PRODUCT_ID_BATCH_NOT_FOUND + ")].status").isEqualTo(NOT_FOUND.value())
+				.jsonPath("$[?(@.productId == " + PRODUCT_ID_BATCH_NOT_FOUND + ")].message").isEqualTo("No product found for productId: " + PRODUCT_ID_BATCH_NOT_FOUND);
+	}
+
+	@Test
+	public void getProductsHidesTheDetailOfInternalErrors() {
+
+		client.get()
+				.uri("/product-composite?ids=" + PRODUCT_ID_BATCH_ERROR)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$[0].status").isEqualTo(INTERNAL_SERVER_ERROR.value())
+				.jsonPath("$[0].message").isEqualTo("Failed to get the composite for the product");
+	}
+
+	@Test
+	public void getProductBatchByPost() {
+
+		client.post()
+				.uri("/product-composite/batch")
+				.contentType(APPLICATION_JSON)
+				.accept(APPLICATION_JSON)
+				.bodyValue(singletonList(PRODUCT_ID_BATCH_POST))
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_BATCH_POST)
+				.jsonPath("$[0].status").isEqualTo(OK.value());
+	}
+
+	@Test
+	public void getProductPreview() {
+
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_PREVIEW + "?preview=2")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.productId").isEqualTo(PRODUCT_ID_PREVIEW)
+				.jsonPath("$.recommendations.length()").isEqualTo(2)
+				.jsonPath("$.reviews.length()").isEqualTo(1)
+				.jsonPath("$.recommendationCount").isEqualTo(5)
+				.jsonPath("$.reviewCount").doesNotExist();
+	}
+
+	@Test
+	public void getProductPreviewInvalidSize() {
+
+		client.get()
+				.uri("/product-composite/" + PRODUCT_ID_PREVIEW + "?preview=0")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.message").isEqualTo("Invalid preview: 0, expected 1 to 100");
+	}
+
 	@Test
 	public void getProductNotFound() {
 
@@ -81,6 +362,23 @@ public class ProductCompositeServiceApplicationTests {
 				.jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
 	}
 
+	private EntityExchangeResult<byte[]> getProduct(int productId, HttpHeaders headers, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/product-composite/" + productId)
+				.accept(APPLICATION_JSON)
+				.headers(h -> h.addAll(headers))
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectBody()
+				.returnResult();
+	}
+
+	private byte[] gunzip(byte[] compressed) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return StreamUtils.copyToByteArray(in);
+		}
+	}
+
 	private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
 		return client.get()
 				.uri("/product-composite/" + productId)
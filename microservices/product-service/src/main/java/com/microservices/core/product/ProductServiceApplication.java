@@ -1,6 +1,8 @@
 package com.microservices.core.product;
 
 import com.microservices.core.product.persistence.ProductEntity;
+import com.microservices.core.product.persistence.ProductShard;
+import com.microservices.core.product.persistence.ProductShards;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,13 +37,18 @@ public class ProductServiceApplication {
 	@Autowired
 	ReactiveMongoOperations mongoTemplate;
 
+	@Autowired
+	ProductShards shards;
+
 	@EventListener(ContextRefreshedEvent.class)
 	public void initIndicesAfterStartup() {
 
 		MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext = mongoTemplate.getConverter().getMappingContext();
 		IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
 
-		ReactiveIndexOperations indexOps = mongoTemplate.indexOps(ProductEntity.class);
-		resolver.resolveIndexFor(ProductEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+		for (ProductShard shard : shards.getShards()) {
+			ReactiveIndexOperations indexOps = shard.getMongoOperations().indexOps(ProductEntity.class);
+			resolver.resolveIndexFor(ProductEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+		}
 	}
 }
@@ -1,9 +1,29 @@
 package com.microservices.core.product.persistence;
 
+import com.microservices.api.core.product.Product;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 
 public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
     Mono<ProductEntity> findByProductId(int productId);
+
+    Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+
+    Mono<Long> deleteByProductId(int productId);
+
+    /**
+     * Read-only projections that only fetch the fields of the API object and read them straight into it,
+     * i.e. without creating entities. The serviceAddress is left empty for the caller to set.
+     */
+    @Query(value = "{ 'productId': ?0 }", fields = "{ '_id': 0, 'productId': 1, 'name': 1, 'weight': 1, 'version': 1 }")
+    Mono<Product> findProductByProductId(int productId);
+
+    @Query(value = "{ 'productId': { '$in': ?0 } }", fields = "{ '_id': 0, 'productId': 1, 'name': 1, 'weight': 1, 'version': 1 }", sort = "{ 'productId': 1 }")
+    Flux<Product> findProductsByProductIdIn(Collection<Integer> productIds);
 }
\ No newline at end of file
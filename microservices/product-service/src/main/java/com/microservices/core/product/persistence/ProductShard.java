@@ -0,0 +1,40 @@
+package com.microservices.core.product.persistence;
+
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+/**
+ * A Mongo database holding the products routed to it by ProductShards, with its own client, template and repository.
+ */
+public class ProductShard {
+
+    private final int index;
+
+    private final ProductRepository repository;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final Runnable onClose;
+
+    public ProductShard(int index, ProductRepository repository, ReactiveMongoOperations mongoOperations, Runnable onClose) {
+        this.index = index;
+        this.repository = repository;
+        this.mongoOperations = mongoOperations;
+        this.onClose = onClose;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public ProductRepository getRepository() {
+        return repository;
+    }
+
+    public ReactiveMongoOperations getMongoOperations() {
+        return mongoOperations;
+    }
+
+    void close() {
+        onClose.run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.microservices.core.product.persistence;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the products that are stored on another shard than the one they are routed to, e.g. after shards were added
+ * to app.product.sharding.uris, enabled at startup with app.product.sharding.rebalance-on-startup.
+ *
+ * The documents of every shard are streamed in batches of {@code rebalance-batch-size}, the next batch is only
+ * requested from the cursor when the previous one is written, so at most a couple of batches are held in memory.
+ * A batch is inserted as is, including _id and version, into the owning shards with unordered bulk writes and then
+ * deleted from the source shard. Products that already are on the owning shard, e.g. copied by an interrupted run,
+ * fail on the unique productId index and are only deleted from the source, i.e. the rebalancing can be rerun.
+ *
+ * Products that are not moved yet are not found on their owning shard, and events applied on the owning shard while
+ * a product is moved can be overwritten, so event consumers should be stopped until the rebalancing is done.
+ */
+@Component
+@ConditionalOnProperty(name = "app.product.sharding.rebalance-on-startup", havingValue = "true")
+public class ProductShardRebalancer implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductShardRebalancer.class);
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final ProductShards shards;
+
+    private final int batchSize;
+
+    @Autowired
+    public ProductShardRebalancer(
+            ProductShards shards,
+            @Value("${app.product.sharding.rebalance-batch-size:1000}") int batchSize) {
+
+        this.shards = shards;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebalance().block();
+    }
+
+    /**
+     * @return the number of products moved to their owning shard
+     */
+    public Mono<Long> rebalance() {
+        LOG.info("Rebalances products over {} shards, in batches of {}", shards.getShards().size(), batchSize);
+
+        return Flux.fromIterable(shards.getShards())
+                .concatMap(this::moveMisplacedProducts)
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> LOG.info("Moved {} products to their owning shard", count))
+                .doOnError(ex -> LOG.error("Rebalancing of products failed: {}", ex.toString()));
+    }
+
+    private Mono<Long> moveMisplacedProducts(ProductShard source) {
+        ReactiveMongoOperations sourceOperations = source.getMongoOperations();
+        String collectionName = sourceOperations.getCollectionName(ProductEntity.class);
+
+        return sourceOperations.find(new Query(), Document.class, collectionName)
+                .filter(document -> shards.forProductId(document.getInteger("productId")) != source)
+                .buffer(batchSize)
+                .concatMap(batch -> moveBatch(source, collectionName, batch), 1)
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> LOG.info("Moved {} products off shard {}", count, source.getIndex()));
+    }
+
+    private Mono<Long> moveBatch(ProductShard source, String collectionName, List<Document> batch) {
+        Map<ProductShard, List<WriteModel<Document>>> insertsByShard = new LinkedHashMap<>();
+        List<Object> ids = new ArrayList<>();
+
+        for (Document document : batch) {
+            insertsByShard.computeIfAbsent(shards.forProductId(document.getInteger("productId")), shard -> new ArrayList<>())
+                    .add(new InsertOneModel<>(document));
+            ids.add(document.get("_id"));
+        }
+
+        return Flux.fromIterable(insertsByShard.entrySet())
+                .concatMap(e -> insert(e.getKey(), collectionName, e.getValue()))
+                .then(source.getMongoOperations().getCollection(collectionName))
+                .flatMap(collection -> Mono.from(collection.deleteMany(Filters.in("_id", ids))))
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    private Mono<Void> insert(ProductShard target, String collectionName, List<WriteModel<Document>> models) {
+        return target.getMongoOperations().getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+                .then()
+                .onErrorResume(MongoBulkWriteException.class, ex -> {
+                    boolean onlyDuplicates = ex.getWriteErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR_CODE);
+                    if (!onlyDuplicates) {
+                        return Mono.error(ex);
+                    }
+
+                    LOG.debug("Skipped {} products that already are on shard {}", ex.getWriteErrors().size(), target.getIndex());
+                    return Mono.empty();
+                });
+    }
+}
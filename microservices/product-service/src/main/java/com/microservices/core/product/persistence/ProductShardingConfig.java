@@ -0,0 +1,67 @@
+package com.microservices.core.product.persistence;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shard 0 is the database of spring.data.mongodb with the repository and template beans, every connection string in
+ * app.product.sharding.uris adds a shard with its own Mongo client. A connection string without a database uses the
+ * database of spring.data.mongodb on that server. With no URIs, all products are in the database of
+ * spring.data.mongodb as before.
+ *
+ * The templates of additional shards share the mapping converter of shard 0, and their repositories are created by
+ * a ReactiveMongoRepositoryFactory on the template, so queries and projections work the same on every shard.
+ */
+@Configuration
+public class ProductShardingConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductShardingConfig.class);
+
+    @Bean
+    public ProductShards productShards(
+            ProductRepository repository,
+            ReactiveMongoOperations mongoOperations,
+            MongoProperties mongoProperties,
+            @Value("${app.product.sharding.uris:}") String[] uris) {
+
+        List<ProductShard> shards = new ArrayList<>();
+        shards.add(new ProductShard(0, repository, mongoOperations, () -> { }));
+
+        for (String uri : uris) {
+            if (uri.trim().isEmpty()) {
+                continue;
+            }
+
+            int index = shards.size();
+            ConnectionString connectionString = new ConnectionString(uri.trim());
+            String database = connectionString.getDatabase() != null ? connectionString.getDatabase() : mongoProperties.getMongoClientDatabase();
+            LOG.info("Creates product shard {} on {}, database: {}", index, connectionString.getHosts(), database);
+
+            MongoClient client = MongoClients.create(connectionString);
+            ReactiveMongoTemplate template = new ReactiveMongoTemplate(new SimpleReactiveMongoDatabaseFactory(client, database), mongoOperations.getConverter());
+
+            shards.add(new ProductShard(
+                    index,
+                    new ReactiveMongoRepositoryFactory(template).getRepository(ProductRepository.class),
+                    template,
+                    client::close));
+        }
+
+        LOG.info("Stores products on {} shards", shards.size());
+        return new ProductShards(shards);
+    }
+}
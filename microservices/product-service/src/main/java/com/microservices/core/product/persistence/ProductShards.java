@@ -0,0 +1,65 @@
+package com.microservices.core.product.persistence;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Routes a product to one of the shards by a hash of its productId, so every call for a productId goes to exactly
+ * one shard.
+ *
+ * The shard of a product depends on the number of shards, changing it requires the products to be moved,
+ * see ProductShardRebalancer.
+ */
+public class ProductShards implements DisposableBean {
+
+    private final List<ProductShard> shards;
+
+    public ProductShards(List<ProductShard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one product shard is required");
+        }
+        this.shards = unmodifiableList(new ArrayList<>(shards));
+    }
+
+    public List<ProductShard> getShards() {
+        return shards;
+    }
+
+    public ProductShard forProductId(int productId) {
+        return shards.get(shardIndex(productId, shards.size()));
+    }
+
+    /**
+     * @return the productIds per shard, in the order of the shards
+     */
+    public Map<ProductShard, List<Integer>> groupByShard(Collection<Integer> productIds) {
+        Map<ProductShard, List<Integer>> productIdsByShard = new LinkedHashMap<>();
+        shards.forEach(shard -> productIdsByShard.put(shard, new ArrayList<>()));
+        productIds.forEach(productId -> productIdsByShard.get(forProductId(productId)).add(productId));
+        productIdsByShard.values().removeIf(List::isEmpty);
+        return productIdsByShard;
+    }
+
+    // The murmur3 finalizer spreads consecutive productIds evenly, it must not change once products are stored
+    static int shardIndex(int productId, int shardCount) {
+        int h = productId;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shardCount);
+    }
+
+    @Override
+    public void destroy() {
+        shards.forEach(ProductShard::close);
+    }
+}
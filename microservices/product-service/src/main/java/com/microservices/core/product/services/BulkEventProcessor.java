@@ -0,0 +1,171 @@
+package com.microservices.core.product.services;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.core.product.persistence.ProductEntity;
+import com.microservices.core.product.persistence.ProductShard;
+import com.microservices.core.product.persistence.ProductShards;
+import com.microservices.util.BulkEvents;
+import com.microservices.util.http.EventProcessingException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies a batch of product events with unordered Mongo bulk writes, one insert per CREATE event
+ * and one delete-by-productId per DELETE event.
+ *
+ * Since an unordered bulk write gives no ordering guarantees, the batch is split into segments where a
+ * productId is never both deleted and created, segments are written one after the other. The events of a segment
+ * are grouped by the shard of their productId, and the shards are written concurrently.
+ * Events that fail, e.g. on a duplicate key, are reported one by one and sent to the DLQ,
+ * the rest of the batch is still applied. A duplicate of a product that is stored with the same name and weight is
+ * an event that was already applied, e.g. by an attempt that failed after a part of the bulk write was applied or by
+ * a redelivery, and counts as succeeded.
+ */
+@Component
+public class BulkEventProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkEventProcessor.class);
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final ProductShards shards;
+
+    private final ProductMapper mapper;
+
+    private final BulkEvents<Product> bulkEvents;
+
+    @Autowired
+    public BulkEventProcessor(ProductShards shards, ProductMapper mapper, StreamBridge streamBridge) {
+        this.shards = shards;
+        this.mapper = mapper;
+        this.bulkEvents = new BulkEvents<>(event -> streamBridge.send("deadLetters-out-0", event));
+    }
+
+    public Mono<Void> process(List<Event<Integer, Product>> events) {
+        LOG.info("Process a batch of {} events...", events.size());
+
+        return Flux.fromIterable(bulkEvents.splitIntoSegments(events))
+                .concatMap(this::writeSegment)
+                .then();
+    }
+
+    private Mono<Void> writeSegment(List<Event<Integer, Product>> segment) {
+        return Flux.fromIterable(bulkEvents.groupBy(segment, event -> shards.forProductId(productIdOf(event))).entrySet())
+                .flatMap(e -> writeShardSegment(e.getKey(), e.getValue()))
+                .then();
+    }
+
+    private int productIdOf(Event<Integer, Product> event) {
+        return event.getData() != null ? event.getData().getProductId() : event.getKey();
+    }
+
+    private Mono<Void> writeShardSegment(ProductShard shard, List<Event<Integer, Product>> segment) {
+        ReactiveMongoOperations mongoOperations = shard.getMongoOperations();
+        List<Event<Integer, Product>> acceptedEvents = new ArrayList<>();
+        List<WriteModel<Document>> writeModels = new ArrayList<>();
+
+        for (Event<Integer, Product> event : segment) {
+            try {
+                writeModels.add(toWriteModel(mongoOperations, event));
+                acceptedEvents.add(event);
+            } catch (RuntimeException ex) {
+                bulkEvents.sendToDeadLetters(event, ex.getMessage());
+            }
+        }
+
+        if (writeModels.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return mongoOperations.getCollection(mongoOperations.getCollectionName(ProductEntity.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writeModels, new BulkWriteOptions().ordered(false))))
+                .doOnNext(result -> LOG.info("Bulk write of {} events on shard {} done, inserted: {}, deleted: {}",
+                        writeModels.size(), shard.getIndex(), result.getInsertedCount(), result.getDeletedCount()))
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof MongoBulkWriteException)))
+                .then()
+                .onErrorResume(MongoBulkWriteException.class, ex -> resolveWriteErrors(shard, acceptedEvents, ex))
+                .onErrorResume(ex -> {
+                    LOG.warn("Bulk write of {} events failed, will send them to the DLQ, error: {}", acceptedEvents.size(), ex.toString());
+                    acceptedEvents.forEach(event -> bulkEvents.sendToDeadLetters(event, ex.toString()));
+                    return Mono.empty();
+                });
+    }
+
+    private WriteModel<Document> toWriteModel(ReactiveMongoOperations mongoOperations, Event<Integer, Product> event) {
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                Product product = event.getData();
+                if (product.getProductId() < 1) {
+                    throw new InvalidInputException("Invalid productId: " + product.getProductId());
+                }
+
+                ProductEntity entity = mapper.apiToEntity(product);
+                entity.setVersion(0);
+
+                Document document = new Document();
+                mongoOperations.getConverter().write(entity, document);
+                return new InsertOneModel<>(document);
+
+            case DELETE:
+                return new DeleteManyModel<>(Filters.eq("productId", event.getKey()));
+
+            default:
+                throw new EventProcessingException("Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event");
+        }
+    }
+
+    private Mono<Void> resolveWriteErrors(ProductShard shard, List<Event<Integer, Product>> events, MongoBulkWriteException ex) {
+        LOG.info("Bulk write of {} events done with {} failed events", events.size(), ex.getWriteErrors().size());
+
+        return Flux.fromIterable(ex.getWriteErrors())
+                .concatMap(error -> {
+                    Event<Integer, Product> event = events.get(error.getIndex());
+                    if (error.getCode() != DUPLICATE_KEY_ERROR_CODE) {
+                        bulkEvents.sendToDeadLetters(event, error.getMessage());
+                        return Mono.empty();
+                    }
+
+                    return isStored(shard, event.getData())
+                            .doOnNext(stored -> {
+                                if (stored) {
+                                    LOG.debug("Product with productId: {} is already stored, the event is skipped", event.getKey());
+                                } else {
+                                    bulkEvents.sendToDeadLetters(event, "Duplicate key, Product Id: " + event.getKey());
+                                }
+                            });
+                })
+                .then();
+    }
+
+    private Mono<Boolean> isStored(ProductShard shard, Product product) {
+        return shard.getRepository().findProductByProductId(product.getProductId())
+                .map(stored -> Objects.equals(stored.getName(), product.getName()) && stored.getWeight() == product.getWeight())
+                .defaultIfEmpty(false)
+                .onErrorReturn(false);
+    }
+}
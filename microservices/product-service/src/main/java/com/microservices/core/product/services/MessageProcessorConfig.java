@@ -3,14 +3,23 @@ package com.microservices.core.product.services;
 import com.microservices.api.core.product.Product;
 import com.microservices.api.core.product.ProductService;
 import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.util.http.EventProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.microservices.api.event.Event.Type.CREATE;
 import static com.microservices.api.event.Event.Type.DELETE;
@@ -22,12 +31,51 @@ public class MessageProcessorConfig {
 
     private final ProductService productService;
 
+    private final StreamBridge streamBridge;
+
+    private final BulkEventProcessor bulkEventProcessor;
+
+    private final ProductCatalog catalog;
+
+    private final int concurrency;
+
+    private final int batchSize;
+
+    private final int batchTimeoutMs;
+
     @Autowired
-    public MessageProcessorConfig(ProductService productService) {
+    public MessageProcessorConfig(
+            ProductService productService,
+            StreamBridge streamBridge,
+            BulkEventProcessor bulkEventProcessor,
+            ProductCatalog catalog,
+            @Value("${app.message-processor.concurrency:4}") int concurrency,
+            @Value("${app.message-processor.batch.size:500}") int batchSize,
+            @Value("${app.message-processor.batch.timeout-ms:100}") int batchTimeoutMs) {
+
         this.productService = productService;
+        this.streamBridge = streamBridge;
+        this.bulkEventProcessor = bulkEventProcessor;
+        this.catalog = catalog;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
+    /**
+     * Listens, without a consumer group, on the products destination, so every instance sees every event
+     * and can update its in-memory catalog, also for events processed by other instances.
+     */
     @Bean
+    public Consumer<Event<Integer, Product>> catalogUpdater() {
+        return event -> {
+            LOG.debug("Update the in-memory catalog for {} event for productId: {}", event.getEventType(), event.getKey());
+            catalog.apply(event);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "blocking", matchIfMissing = true)
     public Consumer<Event<Integer, Product>> messageProcessor() {
         return event -> {
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
@@ -56,4 +104,90 @@ public class MessageProcessorConfig {
 
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Processes events without blocking the binder thread. Events are spread over a fixed number of
+     * lanes by key, each lane is processed in order and up to {@code concurrency} lanes run in parallel,
+     * i.e. events for the same productId keep their order while different productIds are processed concurrently.
+     *
+     * Retries and DLQ handling of the binder do not apply to reactive functions, so failed events
+     * are retried here and then published to the deadLetters-out-0 binding, i.e. to products.dlq instead of the DLQ
+     * bound by the binder. Events without a key, or CREATE events without data, go there right away, since they
+     * can't be assigned to a lane. The binder acknowledges a message when it is emitted into the Flux, before it is
+     * processed, so the events in flight when an instance stops are lost. Use the blocking mode where every event
+     * must be delivered at least once.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "reactive")
+    public Function<Flux<Event<Integer, Product>>, Mono<Void>> reactiveMessageProcessor() {
+        LOG.info("Creates a reactive messageProcessor with concurrency = {}", concurrency);
+
+        return events -> events
+                .filter(this::isProcessable)
+                .groupBy(event -> Math.floorMod(event.getKey(), concurrency))
+                .flatMap(lane -> lane.concatMap(this::processEvent), concurrency)
+                .then();
+    }
+
+    /**
+     * Collects events until {@code batch.size} events are received or {@code batch.timeout-ms} has passed,
+     * and applies each batch with Mongo bulk writes. Batches are applied one at a time to keep the order of events.
+     * Events without a key, or CREATE events without data, are sent to the DLQ before they are buffered, as in the
+     * reactive mode.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "batch")
+    public Function<Flux<Event<Integer, Product>>, Mono<Void>> batchMessageProcessor() {
+        LOG.info("Creates a batching messageProcessor with batch size = {} and timeout = {} ms", batchSize, batchTimeoutMs);
+
+        return events -> events
+                .filter(this::isProcessable)
+                .bufferTimeout(batchSize, Duration.ofMillis(batchTimeoutMs))
+                .concatMap(bulkEventProcessor::process)
+                .then();
+    }
+
+    // An error here would terminate the inbound Flux and stop the binding for good, so invalid events are dead-lettered
+    private boolean isProcessable(Event<Integer, Product> event) {
+        if (event.getKey() != null && (event.getEventType() != CREATE || event.getData() != null)) {
+            return true;
+        }
+
+        LOG.warn("Invalid {} event for productId: {}, will send it to the DLQ", event.getEventType(), event.getKey());
+        streamBridge.send("deadLetters-out-0", event);
+        return false;
+    }
+
+    private Mono<Void> processEvent(Event<Integer, Product> event) {
+        return Mono.defer(() -> {
+                    LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+                    switch (event.getEventType()) {
+
+                        case CREATE:
+                            Product product = event.getData();
+                            LOG.info("Create product with ID: {}", product.getProductId());
+                            return productService.createProduct(product).then();
+
+                        case DELETE:
+                            int productId = event.getKey();
+                            LOG.info("Delete product with ProductID: {}", productId);
+                            return productService.deleteProduct(productId);
+
+                        default:
+                            String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                            LOG.warn(errorMessage);
+                            return Mono.<Void>error(new EventProcessingException(errorMessage));
+                    }
+                })
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof InvalidInputException) && !(ex instanceof EventProcessingException)))
+                .doOnSuccess(v -> LOG.info("Message processing done!"))
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to process event for productId: {}, will send it to the DLQ, error: {}", event.getKey(), ex.toString());
+                    streamBridge.send("deadLetters-out-0", event);
+                    return Mono.empty();
+                });
+    }
+}
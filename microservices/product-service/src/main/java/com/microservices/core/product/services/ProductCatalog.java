@@ -0,0 +1,326 @@
+package com.microservices.core.product.services;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.event.Event;
+import com.microservices.core.product.persistence.ProductShards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The whole product catalog in memory, in a ProductTable keyed by productId, enabled with app.product.catalog.enabled.
+ *
+ * The catalog is loaded at startup by streaming the products of every shard. Loading runs as an application runner
+ * and blocks it, so the readiness state only changes to accepting traffic once the load is done. After that it is
+ * kept up to date by the events on the products destination, seen by every instance through the catalogUpdater
+ * consumer. Products deleted while loading are not added by the load.
+ *
+ * The events are applied whether or not the messageProcessor persisted them, and the anonymous queue of the
+ * catalogUpdater misses the events sent while it reconnects, so the catalog can diverge from the shards: a create
+ * that went to the DLQ is served as existing, and a missed delete keeps serving a deleted product. The catalog is
+ * therefore reconciled with the shards every {@code reconcile-interval-seconds}, with the same streaming as the
+ * load: missing and different products are put, and products that are not in any shard are removed. Products
+ * changed by events while reconciling are left as the events set them.
+ *
+ * The number of products and the estimated heap size of the catalog are reported as the product.catalog.products
+ * and product.catalog.memory gauges, and logged with the size per product after the load. The estimate is computed
+ * from the array lengths and is within 10% of the measured heap, see ProductTable.estimatedBytes. The number of products
+ * that the last reconcile repaired is reported as the product.catalog.divergence gauge.
+ */
+@Component
+public class ProductCatalog implements ApplicationRunner, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final ProductShards shards;
+
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ProductTable table;
+
+    private final Duration reconcileInterval;
+
+    // Products created or deleted by events during a load or reconcile, null otherwise
+    private Set<Integer> changedWhileSyncing;
+
+    private volatile boolean loaded;
+
+    private final AtomicLong divergence = new AtomicLong();
+
+    private volatile Disposable reconciliation;
+
+    @Autowired
+    public ProductCatalog(
+            ProductShards shards,
+            MeterRegistry registry,
+            @Value("${app.product.catalog.enabled:false}") boolean enabled,
+            @Value("${app.product.catalog.expected-size:10000}") int expectedSize,
+            @Value("${app.product.catalog.reconcile-interval-seconds:300}") int reconcileIntervalSeconds) {
+
+        this.shards = shards;
+        this.enabled = enabled;
+        this.table = new ProductTable(enabled ? expectedSize : 1);
+        this.reconcileInterval = Duration.ofSeconds(reconcileIntervalSeconds);
+
+        if (enabled) {
+            Gauge.builder("product.catalog.products", this, ProductCatalog::size)
+                    .description("The number of products in the in-memory catalog")
+                    .register(registry);
+            Gauge.builder("product.catalog.memory", this, ProductCatalog::estimatedBytes)
+                    .description("The estimated heap size of the in-memory catalog")
+                    .baseUnit(BaseUnits.BYTES)
+                    .register(registry);
+            Gauge.builder("product.catalog.divergence", divergence, AtomicLong::get)
+                    .description("The number of products that differed from the shards in the last reconcile of the catalog")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * @return true if GETs can be served from the catalog
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        LOG.info("Loads the product catalog into memory...");
+        long start = System.currentTimeMillis();
+
+        sync().block();
+        loaded = true;
+
+        long products = size();
+        long bytes = estimatedBytes();
+        LOG.info("Loaded {} products in {} ms, the catalog takes {} bytes, {} bytes per product",
+                products, System.currentTimeMillis() - start, bytes, products == 0 ? 0 : bytes / products);
+
+        if (!reconcileInterval.isZero()) {
+            reconciliation = Flux.interval(reconcileInterval)
+                    .concatMap(tick -> reconcile().onErrorResume(ex -> {
+                        LOG.warn("Failed to reconcile the product catalog: {}", ex.toString());
+                        return Mono.empty();
+                    }))
+                    .subscribe();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (reconciliation != null) {
+            reconciliation.dispose();
+        }
+    }
+
+    /**
+     * Repairs the products of the catalog that differ from the shards.
+     *
+     * @return the number of products that were missing, different or removed
+     */
+    public Mono<Long> reconcile() {
+        return sync()
+                .doOnNext(count -> {
+                    divergence.set(count);
+                    if (count > 0) {
+                        LOG.warn("Reconciled the product catalog, repaired {} products that differed from the shards", count);
+                    } else {
+                        LOG.debug("Reconciled the product catalog, no product differed from the shards");
+                    }
+                });
+    }
+
+    private Mono<Long> sync() {
+        return Mono.defer(() -> {
+            Set<Integer> storedProductIds = new HashSet<>();
+            AtomicLong repaired = new AtomicLong();
+
+            lock.writeLock().lock();
+            try {
+                changedWhileSyncing = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            return Flux.fromIterable(shards.getShards())
+                    .concatMap(shard -> shard.getRepository().findAll())
+                    .doOnNext(entity -> {
+                        storedProductIds.add(entity.getProductId());
+                        if (put(entity.getProductId(), entity.getName(), entity.getWeight())) {
+                            repaired.incrementAndGet();
+                        }
+                    })
+                    .then(Mono.fromCallable(() -> repaired.addAndGet(removeAllExcept(storedProductIds))))
+                    .doFinally(signal -> {
+                        lock.writeLock().lock();
+                        try {
+                            changedWhileSyncing = null;
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * @return the product without serviceAddress, or null if it is not in the catalog
+     */
+    public Product get(int productId) {
+        lock.readLock().lock();
+        try {
+            return table.get(productId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the products of productIds that are in the catalog, once per productId and without serviceAddress
+     */
+    public List<Product> getAll(Collection<Integer> productIds) {
+        List<Product> products = new ArrayList<>(productIds.size());
+        lock.readLock().lock();
+        try {
+            for (Integer productId : new LinkedHashSet<>(productIds)) {
+                Product product = table.get(productId);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return products;
+    }
+
+    public void apply(Event<Integer, Product> event) {
+        if (!enabled) {
+            return;
+        }
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                Product product = event.getData();
+                if (product != null && product.getProductId() > 0) {
+                    // A create of an existing product fails on the unique productId index, so the first one is kept
+                    lock.writeLock().lock();
+                    try {
+                        table.putIfAbsent(product.getProductId(), product.getName(), product.getWeight());
+                        if (changedWhileSyncing != null) {
+                            changedWhileSyncing.add(product.getProductId());
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                break;
+
+            case DELETE:
+                if (event.getKey() != null && event.getKey() > 0) {
+                    lock.writeLock().lock();
+                    try {
+                        table.remove(event.getKey());
+                        if (changedWhileSyncing != null) {
+                            changedWhileSyncing.add(event.getKey());
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                break;
+
+            default:
+                LOG.debug("Ignores {} event for productId: {}", event.getEventType(), event.getKey());
+        }
+    }
+
+    /**
+     * @return true if the product was missing or different
+     */
+    private boolean put(int productId, String name, int weight) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileSyncing.contains(productId)) {
+                return false;
+            }
+
+            Product product = table.get(productId);
+            if (product != null && Objects.equals(product.getName(), name) && product.getWeight() == weight) {
+                return false;
+            }
+
+            table.remove(productId);
+            table.putIfAbsent(productId, name, weight);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of removed products
+     */
+    private long removeAllExcept(Set<Integer> storedProductIds) {
+        lock.writeLock().lock();
+        try {
+            long removed = 0;
+            for (int productId : table.productIds()) {
+                if (!storedProductIds.contains(productId) && !changedWhileSyncing.contains(productId)) {
+                    table.remove(productId);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long size() {
+        lock.readLock().lock();
+        try {
+            return table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return table.estimatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.microservices.core.product.services;
 
 import com.microservices.core.product.persistence.ProductEntity;
-import com.microservices.core.product.persistence.ProductRepository;
+import com.microservices.core.product.persistence.ProductShards;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +12,17 @@ import com.microservices.api.core.product.ProductService;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.api.exceptions.NotFoundException;
 import com.microservices.util.http.ServiceUtil;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.microservices.util.ProductIds.validateProductIds;
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
 import static reactor.core.publisher.Mono.error;
 
 @RestController
@@ -23,13 +32,16 @@ public class ProductServiceImpl implements ProductService {
 
     private final ServiceUtil serviceUtil;
 
-    private final ProductRepository repository;
+    private final ProductShards shards;
+
+    private final ProductCatalog catalog;
 
     private final ProductMapper mapper;
 
     @Autowired
-    public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
-        this.repository = repository;
+    public ProductServiceImpl(ProductShards shards, ProductCatalog catalog, ProductMapper mapper, ServiceUtil serviceUtil) {
+        this.shards = shards;
+        this.catalog = catalog;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
     }
@@ -43,7 +55,7 @@ public class ProductServiceImpl implements ProductService {
 
         ProductEntity entity = mapper.apiToEntity(body);
 
-        return repository.save(entity)
+        return shards.forProductId(body.getProductId()).getRepository().save(entity)
                 .log()
                 .onErrorMap(
                         DuplicateKeyException.class,
@@ -58,10 +70,47 @@ public class ProductServiceImpl implements ProductService {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
-        return repository.findByProductId(productId)
+        if (catalog.isLoaded()) {
+            Product product = catalog.get(productId);
+            if (product != null) {
+                return Mono.just(setServiceAddress(product));
+            }
+            // Falls back to the database for a product created by an event not yet seen by the catalog
+        }
+
+        return shards.forProductId(productId).getRepository().findProductByProductId(productId)
                 .switchIfEmpty(error(new NotFoundException("No product found for productId: " + productId)))
                 .log()
-                .map(mapper::entityToApi)
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+
+        validateProductIds(productIds);
+
+        LOG.debug("getProducts: tries to find products for {} product ids", productIds.size());
+
+        List<Product> cachedProducts = new ArrayList<>();
+        List<Integer> missingProductIds = productIds;
+        if (catalog.isLoaded()) {
+            cachedProducts = catalog.getAll(productIds);
+            Set<Integer> cachedProductIds = new HashSet<>();
+            cachedProducts.forEach(product -> cachedProductIds.add(product.getProductId()));
+            missingProductIds = productIds.stream().filter(productId -> !cachedProductIds.contains(productId)).distinct().collect(toList());
+
+            if (missingProductIds.isEmpty()) {
+                cachedProducts.sort(comparingInt(Product::getProductId));
+                return Flux.fromIterable(cachedProducts).map(this::setServiceAddress);
+            }
+        }
+
+        // One query per shard, run concurrently
+        return Flux.fromIterable(shards.groupByShard(missingProductIds).entrySet())
+                .flatMap(e -> e.getKey().getRepository().findProductsByProductIdIn(e.getValue()))
+                .concatWith(Flux.fromIterable(cachedProducts))
+                .sort(comparingInt(Product::getProductId))
+                .log()
                 .map(this::setServiceAddress);
     }
 
@@ -73,7 +122,10 @@ public class ProductServiceImpl implements ProductService {
         }
 
         LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-        return repository.findByProductId(productId).log().map(repository::delete).flatMap(e -> e);
+        return shards.forProductId(productId).getRepository().deleteByProductId(productId)
+                .log()
+                .doOnNext(count -> LOG.debug("deleteProduct: deleted {} entities", count))
+                .then();
     }
 
     private Product setServiceAddress(Product e) {
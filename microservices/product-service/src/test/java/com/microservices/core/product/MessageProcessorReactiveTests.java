@@ -0,0 +1,101 @@
+package com.microservices.core.product;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.event.Event;
+import com.microservices.core.product.persistence.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+		"spring.data.mongodb.port: 0",
+		"app.message-processor.mode: reactive",
+		"app.message-processor.concurrency: 2"})
+@Import({TestChannelBinderConfiguration.class})
+public class MessageProcessorReactiveTests {
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private OutputDestination target;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Function<Flux<Event<Integer, Product>>, Mono<Void>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+		purgeDeadLetters();
+	}
+
+	@Test
+	public void processEventsKeepsOrderPerProductId() {
+
+		messageProcessor.apply(Flux.just(
+				createProductEvent(1),
+				createProductEvent(2),
+				deleteProductEvent(1),
+				createProductEvent(3),
+				createProductEvent(1))).block();
+
+		assertEquals(3, (long)repository.count().block());
+		assertNotNull(repository.findByProductId(1).block());
+		assertNull(target.receive(0, "products.dlq"));
+	}
+
+	@Test
+	public void failedEventIsSentToDeadLetters() {
+
+		messageProcessor.apply(Flux.just(
+				createProductEvent(1),
+				createProductEvent(1))).block();
+
+		assertEquals(1, (long)repository.count().block());
+
+		Message<byte[]> deadLetter = target.receive(0, "products.dlq");
+		assertNotNull(deadLetter);
+		assertTrue(new String(deadLetter.getPayload()).contains("\"key\":1"));
+	}
+
+	@Test
+	public void eventWithoutKeyIsSentToDeadLettersAndProcessingGoesOn() {
+
+		messageProcessor.apply(Flux.just(
+				new Event(DELETE, null, null),
+				createProductEvent(1))).block();
+
+		assertNotNull(repository.findByProductId(1).block());
+		assertNotNull(target.receive(0, "products.dlq"));
+		assertNull(target.receive(0, "products.dlq"));
+	}
+
+	private void purgeDeadLetters() {
+		while (target.receive(0, "products.dlq") != null) {
+		}
+	}
+
+	private Event<Integer, Product> createProductEvent(int productId) {
+		Product product = new Product(productId, "Name " + productId, productId, "SA");
+		return new Event(CREATE, productId, product);
+	}
+
+	private Event<Integer, Product> deleteProductEvent(int productId) {
+		return new Event(DELETE, productId, null);
+	}
+}
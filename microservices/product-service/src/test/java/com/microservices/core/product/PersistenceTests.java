@@ -69,6 +69,13 @@ public class PersistenceTests {
         StepVerifier.create(repository.existsById(savedEntity.getId())).expectNext(false).verifyComplete();
     }
 
+    @Test
+    public void deleteByProductId() {
+        StepVerifier.create(repository.deleteByProductId(savedEntity.getProductId())).expectNext(1L).verifyComplete();
+        StepVerifier.create(repository.existsById(savedEntity.getId())).expectNext(false).verifyComplete();
+        StepVerifier.create(repository.deleteByProductId(savedEntity.getProductId())).expectNext(0L).verifyComplete();
+    }
+
     @Test
     public void getByProductId() {
 
@@ -77,6 +84,17 @@ public class PersistenceTests {
                 .verifyComplete();
     }
 
+    @Test
+    public void getProjectionByProductId() {
+
+        StepVerifier.create(repository.findProductByProductId(savedEntity.getProductId()))
+                .expectNextMatches(product ->
+                        savedEntity.getProductId() == product.getProductId() &&
+                        savedEntity.getName().equals(product.getName()) &&
+                        savedEntity.getWeight() == product.getWeight())
+                .verifyComplete();
+    }
+
     @Test
     public void duplicateError() {
         ProductEntity entity = new ProductEntity(savedEntity.getProductId(), "n", 1);
@@ -0,0 +1,155 @@
+package com.microservices.core.product;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.event.Event;
+import com.microservices.core.product.persistence.ProductEntity;
+import com.microservices.core.product.persistence.ProductRepository;
+import com.microservices.core.product.services.ProductCatalog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.data.mongodb.port: 0",
+		"app.product.catalog.enabled: true",
+		"app.product.catalog.expected-size: 4"})
+public class ProductCatalogTests {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private ProductCatalog catalog;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Product>> messageProcessor = null;
+
+	@Autowired
+	@Qualifier("catalogUpdater")
+	private Consumer<Event<Integer, Product>> catalogUpdater = null;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+		for (int productId = 1; productId <= 10; productId++) {
+			catalogUpdater.accept(new Event(DELETE, productId, null));
+		}
+	}
+
+	@Test
+	public void getProductFromCatalog() {
+
+		assertTrue(catalog.isLoaded());
+
+		sendCreateProductEvent(1);
+
+		// Served from memory, also when the database no longer has the product
+		repository.deleteAll().block();
+		getAndVerifyProduct("/1", OK)
+				.jsonPath("$.productId").isEqualTo(1)
+				.jsonPath("$.name").isEqualTo("Name 1")
+				.jsonPath("$.weight").isEqualTo(1);
+
+		catalogUpdater.accept(new Event(DELETE, 1, null));
+		assertNull(catalog.get(1));
+		getAndVerifyProduct("/1", NOT_FOUND);
+	}
+
+	@Test
+	public void getProductsFromCatalogAndDatabase() {
+
+		sendCreateProductEvent(3);
+		sendCreateProductEvent(1);
+
+		// Not seen by the catalog yet, read from the database
+		repository.save(new ProductEntity(2, "Name 2", 2)).block();
+
+		getAndVerifyProduct("?productIds=3,2,1,3,4", OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[2].productId").isEqualTo(3);
+	}
+
+	@Test
+	public void duplicateCreateKeepsTheFirstProduct() {
+
+		sendCreateProductEvent(1);
+		catalogUpdater.accept(new Event(CREATE, 1, new Product(1, "Other name", 2, "SA")));
+
+		assertEquals("Name 1", catalog.get(1).getName());
+	}
+
+	@Test
+	public void reconcileRepairsTheCatalog() {
+
+		sendCreateProductEvent(1);
+		sendCreateProductEvent(2);
+
+		// A delete that the catalog missed, and a create that was not persisted
+		repository.delete(repository.findByProductId(1).block()).block();
+		catalogUpdater.accept(new Event(CREATE, 3, new Product(3, "Name 3", 3, "SA")));
+
+		assertEquals(2, (long)catalog.reconcile().block());
+
+		assertNull(catalog.get(1));
+		assertEquals("Name 2", catalog.get(2).getName());
+		assertNull(catalog.get(3));
+		assertEquals(2, registry.get("product.catalog.divergence").gauge().value());
+
+		assertEquals(0, (long)catalog.reconcile().block());
+	}
+
+	@Test
+	public void memoryIsReported() {
+
+		for (int productId = 1; productId <= 10; productId++) {
+			sendCreateProductEvent(productId);
+		}
+
+		assertEquals(10, registry.get("product.catalog.products").gauge().value());
+
+		// 12 bytes per slot at a load factor of at most 0.5, and a byte array of 24 bytes per name
+		double bytesPerProduct = registry.get("product.catalog.memory").gauge().value() / 10;
+		assertTrue(bytesPerProduct > 24 && bytesPerProduct < 100, "Unexpected bytes per product: " + bytesPerProduct);
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyProduct(String path, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/product" + path)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private void sendCreateProductEvent(int productId) {
+		Product product = new Product(productId, "Name " + productId, productId, "SA");
+		Event<Integer, Product> event = new Event(CREATE, productId, product);
+		messageProcessor.accept(event);
+		catalogUpdater.accept(event);
+	}
+}
@@ -58,6 +58,24 @@ public class ProductServiceApplicationTests {
 				.jsonPath("$.productId").isEqualTo(productId);
 	}
 
+	@Test
+	public void getProductsByProductIds() {
+
+		sendCreateProductEvent(2);
+		sendCreateProductEvent(1);
+
+		client.get()
+				.uri("/product?productIds=1,2,3")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2);
+	}
+
 	@Test
 	public void duplicateError() {
 
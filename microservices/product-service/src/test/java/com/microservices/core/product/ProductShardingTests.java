@@ -0,0 +1,138 @@
+package com.microservices.core.product;
+
+import com.microservices.api.core.product.Product;
+import com.microservices.api.event.Event;
+import com.microservices.core.product.persistence.ProductEntity;
+import com.microservices.core.product.persistence.ProductShard;
+import com.microservices.core.product.persistence.ProductShardRebalancer;
+import com.microservices.core.product.persistence.ProductShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"app.product.sharding.uris=" +
+				"mongodb://${spring.data.mongodb.host}:${spring.data.mongodb.port}/product-shard-1," +
+				"mongodb://${spring.data.mongodb.host}:${spring.data.mongodb.port}/product-shard-2",
+		"app.product.sharding.rebalance-on-startup=true",
+		"app.product.sharding.rebalance-batch-size=2"})
+public class ProductShardingTests extends MongoDbTestBase {
+
+	private static final int PRODUCTS = 6;
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ProductShards shards;
+
+	@Autowired
+	private ProductShardRebalancer rebalancer;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Product>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		shards.getShards().forEach(shard -> shard.getRepository().deleteAll().block());
+	}
+
+	@Test
+	public void productsAreRoutedToOneShard() {
+
+		assertEquals(3, shards.getShards().size());
+
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			sendCreateProductEvent(productId);
+		}
+
+		Set<Integer> usedShards = new HashSet<>();
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			ProductShard expectedShard = shards.forProductId(productId);
+			usedShards.add(expectedShard.getIndex());
+			assertOnlyOn(expectedShard, productId);
+
+			getAndVerifyProducts("/" + productId)
+					.jsonPath("$.productId").isEqualTo(productId);
+		}
+		assertTrue(usedShards.size() > 1);
+
+		getAndVerifyProducts("?productIds=1,2,3,4,5,6")
+				.jsonPath("$.length()").isEqualTo(PRODUCTS)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[5].productId").isEqualTo(6);
+
+		sendDeleteProductEvent(4);
+		shards.getShards().forEach(shard -> assertNull(shard.getRepository().findByProductId(4).block()));
+	}
+
+	@Test
+	public void rebalanceMovesProductsToTheirShard() {
+
+		ProductShard firstShard = shards.getShards().get(0);
+		long misplaced = 0;
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			firstShard.getRepository().save(new ProductEntity(productId, "Name " + productId, productId)).block();
+			if (shards.forProductId(productId) != firstShard) {
+				misplaced++;
+			}
+		}
+		assertTrue(misplaced > 0);
+
+		assertEquals(misplaced, (long)rebalancer.rebalance().block());
+
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			assertOnlyOn(shards.forProductId(productId), productId);
+		}
+
+		assertEquals(0, (long)rebalancer.rebalance().block());
+	}
+
+	private void assertOnlyOn(ProductShard expectedShard, int productId) {
+		for (ProductShard shard : shards.getShards()) {
+			ProductEntity entity = shard.getRepository().findByProductId(productId).block();
+			if (shard == expectedShard) {
+				assertNotNull(entity);
+				assertEquals("Name " + productId, entity.getName());
+			} else {
+				assertNull(entity);
+			}
+		}
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyProducts(String path) {
+		return client.get()
+				.uri("/product" + path)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private void sendCreateProductEvent(int productId) {
+		Product product = new Product(productId, "Name " + productId, productId, "SA");
+		Event<Integer, Product> event = new Event(CREATE, productId, product);
+		messageProcessor.accept(event);
+	}
+
+	private void sendDeleteProductEvent(int productId) {
+		Event<Integer, Product> event = new Event(DELETE, productId, null);
+		messageProcessor.accept(event);
+	}
+}
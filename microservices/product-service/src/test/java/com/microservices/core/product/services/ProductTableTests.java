@@ -0,0 +1,81 @@
+package com.microservices.core.product.services;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductTableTests {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProductTableTests.class);
+
+	private static final int NUMBER_OF_PRODUCTS = 1_000_000;
+
+	private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+	@Test
+	public void putGetAndRemove() {
+
+		ProductTable table = new ProductTable(4);
+		for (int productId = 1; productId <= 100; productId++) {
+			assertTrue(table.putIfAbsent(productId, "Name " + productId, productId));
+		}
+		assertFalse(table.putIfAbsent(1, "Other name", 2));
+		assertEquals(100, table.size());
+
+		for (int productId = 1; productId <= 100; productId += 2) {
+			assertTrue(table.remove(productId));
+		}
+		assertFalse(table.remove(1));
+
+		assertEquals(50, table.size());
+		assertNull(table.get(1));
+		assertEquals("Name 2", table.get(2).getName());
+		assertEquals(100, table.get(100).getWeight());
+		assertThrows(IllegalArgumentException.class, () -> table.putIfAbsent(0, "Name", 1));
+	}
+
+	/**
+	 * Measures the heap taken by the table as the heap used after loading it minus the heap used before, both after
+	 * a full GC, and checks that the estimate reported by the product.catalog.memory gauge is within 10% of it.
+	 */
+	@Test
+	public void estimatedBytesMatchTheMeasuredHeap() throws InterruptedException {
+
+		long usedBefore = usedHeapAfterGc();
+
+		ProductTable table = new ProductTable(10_000);
+		for (int productId = 1; productId <= NUMBER_OF_PRODUCTS; productId++) {
+			table.putIfAbsent(productId, "Product name " + productId, productId);
+		}
+
+		long measuredBytes = usedHeapAfterGc() - usedBefore;
+		long estimatedBytes = table.estimatedBytes();
+
+		LOG.info("JDK: {} {}, {} products take {} bytes, {} bytes per product, estimated {} bytes, {} bytes per product",
+				System.getProperty("java.vm.name"), System.getProperty("java.version"), table.size(),
+				measuredBytes, measuredBytes / NUMBER_OF_PRODUCTS, estimatedBytes, estimatedBytes / NUMBER_OF_PRODUCTS);
+
+		assertEquals(NUMBER_OF_PRODUCTS, table.size());
+		assertEquals(measuredBytes, estimatedBytes, measuredBytes * 0.1);
+	}
+
+	// Repeats the GC until the used heap stops shrinking
+	private long usedHeapAfterGc() throws InterruptedException {
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(50);
+			long usedNow = memoryMXBean.getHeapMemoryUsage().getUsed();
+			if (usedNow >= used) {
+				break;
+			}
+			used = usedNow;
+		}
+		return used;
+	}
+}
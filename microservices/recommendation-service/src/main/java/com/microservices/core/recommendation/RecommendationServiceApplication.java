@@ -1,5 +1,6 @@
 package com.microservices.core.recommendation;
 
+import com.microservices.core.recommendation.persistence.RecommendationBucketEntity;
 import com.microservices.core.recommendation.persistence.RecommendationEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +42,9 @@ public class RecommendationServiceApplication {
 		MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext = mongoTemplate.getConverter().getMappingContext();
 		IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
 
-		ReactiveIndexOperations indexOps = mongoTemplate.indexOps(RecommendationEntity.class);
-		resolver.resolveIndexFor(RecommendationEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+		for (Class<?> entityClass : new Class<?>[] {RecommendationEntity.class, RecommendationBucketEntity.class}) {
+			ReactiveIndexOperations indexOps = mongoTemplate.indexOps(entityClass);
+			resolver.resolveIndexFor(entityClass).forEach(e -> indexOps.ensureIndex(e).block());
+		}
 	}
 }
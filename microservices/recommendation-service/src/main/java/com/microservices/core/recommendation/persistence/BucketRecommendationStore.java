@@ -0,0 +1,145 @@
+package com.microservices.core.recommendation.persistence;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Recommendations packed into RecommendationBucketEntity documents of at most {@code bucket-size} recommendations
+ * per product, so reading the recommendations of a product reads a few documents instead of one per recommendation.
+ *
+ * A recommendation is added with a single upsert that pushes it to a bucket of the product that is not full and
+ * doesn't contain its recommendationId ($ne), or creates a new bucket if there is none. A recommendationId that
+ * already exists in another bucket of the product makes the push or the new bucket violate the unique prod-rec-ids
+ * index, so duplicates fail with a DuplicateKeyException as in the document layout.
+ */
+@Component
+@ConditionalOnProperty(name = "app.recommendation.storage.layout", havingValue = "bucket")
+public class BucketRecommendationStore implements RecommendationStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BucketRecommendationStore.class);
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final RecommendationBucketRepository repository;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final int bucketSize;
+
+    @Autowired
+    public BucketRecommendationStore(
+            RecommendationBucketRepository repository,
+            ReactiveMongoOperations mongoOperations,
+            @Value("${app.recommendation.storage.bucket-size:200}") int bucketSize) {
+
+        LOG.info("Stores recommendations in buckets of at most {} recommendations", bucketSize);
+
+        this.repository = repository;
+        this.mongoOperations = mongoOperations;
+        this.bucketSize = bucketSize;
+    }
+
+    @Override
+    public Mono<RecommendationEntity> insert(RecommendationEntity entity) {
+        return mongoOperations.execute(RecommendationBucketEntity.class,
+                        collection -> collection.updateOne(bucketFilter(entity), bucketUpdate(entity), UPSERT))
+                .then(Mono.just(entity));
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsByProductId(int productId) {
+        return repository.findRecommendationsByProductId(productId);
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsByProductIdIn(Collection<Integer> productIds) {
+        return repository.findRecommendationsByProductIdIn(productIds);
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsPage(int productId, int after, int limit) {
+        return repository.findRecommendationsPage(productId, after, limit);
+    }
+
+    @Override
+    public Flux<Recommendation> findTopRecommendations(int productId, int limit) {
+        return repository.findTopRecommendations(productId, limit);
+    }
+
+    @Override
+    public Flux<Recommendation> findAllProductAuthors() {
+        return repository.findAllProductAuthors();
+    }
+
+    @Override
+    public Mono<Long> countByProductId(int productId) {
+        return repository.sumCountByProductId(productId).defaultIfEmpty(0L);
+    }
+
+    @Override
+    public Mono<Long> deleteByProductId(int productId) {
+        return repository.deleteByProductId(productId);
+    }
+
+    @Override
+    public String getCollectionName() {
+        return mongoOperations.getCollectionName(RecommendationBucketEntity.class);
+    }
+
+    @Override
+    public WriteModel<Document> insertModel(RecommendationEntity entity) {
+        return new UpdateOneModel<>(bucketFilter(entity), bucketUpdate(entity), UPSERT);
+    }
+
+    @Override
+    public WriteModel<Document> deleteModel(int productId) {
+        return new DeleteManyModel<>(Filters.eq("productId", productId));
+    }
+
+    @Override
+    public List<Document> ratingStages() {
+        return Arrays.asList(
+                new Document("$unwind", "$recommendations"),
+                new Document("$project", new Document("_id", 0).append("productId", 1).append("rating", "$recommendations.rating")));
+    }
+
+    private Bson bucketFilter(RecommendationEntity entity) {
+        return Filters.and(
+                Filters.eq("productId", entity.getProductId()),
+                Filters.lt("count", bucketSize),
+                Filters.ne("recommendationIds", entity.getRecommendationId()));
+    }
+
+    // Field names as written by the converter for RecommendationBucketEntity.Item
+    private Bson bucketUpdate(RecommendationEntity entity) {
+        Document item = new Document("recommendationId", entity.getRecommendationId())
+                .append("author", entity.getAuthor())
+                .append("rating", entity.getRating())
+                .append("content", entity.getContent());
+
+        return Updates.combine(
+                Updates.push("recommendationIds", entity.getRecommendationId()),
+                Updates.push("recommendations", item),
+                Updates.inc("count", 1));
+    }
+}
@@ -0,0 +1,102 @@
+package com.microservices.core.recommendation.persistence;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * One document per recommendation in the recommendations collection, the duplicate check is done by the
+ * unique prod-rec-id index.
+ */
+@Component
+@ConditionalOnProperty(name = "app.recommendation.storage.layout", havingValue = "document", matchIfMissing = true)
+public class DocumentRecommendationStore implements RecommendationStore {
+
+    private final RecommendationRepository repository;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public DocumentRecommendationStore(RecommendationRepository repository, ReactiveMongoOperations mongoOperations) {
+        this.repository = repository;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Mono<RecommendationEntity> insert(RecommendationEntity entity) {
+        return repository.save(entity);
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsByProductId(int productId) {
+        return repository.findRecommendationsByProductId(productId);
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsByProductIdIn(Collection<Integer> productIds) {
+        return repository.findRecommendationsByProductIdIn(productIds);
+    }
+
+    @Override
+    public Flux<Recommendation> findRecommendationsPage(int productId, int after, int limit) {
+        return repository.findRecommendationsPage(productId, after, limit);
+    }
+
+    @Override
+    public Flux<Recommendation> findTopRecommendations(int productId, int limit) {
+        return repository.findTopRecommendations(productId, limit);
+    }
+
+    @Override
+    public Flux<Recommendation> findAllProductAuthors() {
+        return repository.findAllProductAuthors();
+    }
+
+    @Override
+    public Mono<Long> countByProductId(int productId) {
+        return repository.countByProductId(productId);
+    }
+
+    @Override
+    public Mono<Long> deleteByProductId(int productId) {
+        return repository.deleteByProductId(productId);
+    }
+
+    @Override
+    public String getCollectionName() {
+        return mongoOperations.getCollectionName(RecommendationEntity.class);
+    }
+
+    @Override
+    public WriteModel<Document> insertModel(RecommendationEntity entity) {
+        entity.setVersion(0);
+
+        Document document = new Document();
+        mongoOperations.getConverter().write(entity, document);
+        return new InsertOneModel<>(document);
+    }
+
+    @Override
+    public WriteModel<Document> deleteModel(int productId) {
+        return new DeleteManyModel<>(Filters.eq("productId", productId));
+    }
+
+    @Override
+    public List<Document> ratingStages() {
+        return singletonList(new Document("$project", new Document("_id", 0).append("productId", 1).append("rating", 1)));
+    }
+}
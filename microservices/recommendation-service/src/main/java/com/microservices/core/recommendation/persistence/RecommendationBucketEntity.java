@@ -0,0 +1,122 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Up to {@code bucket-size} recommendations of a product packed into one document, used when
+ * app.recommendation.storage.layout is bucket. A product has as many buckets as needed, they are filled
+ * in no particular order and only written by BucketRecommendationStore.
+ *
+ * The recommendationIds of a bucket are kept next to the recommendations in a multikey index that is unique
+ * together with the productId, i.e. a recommendationId can only occur once among all buckets of a product,
+ * like the prod-rec-id index of RecommendationEntity.
+ */
+@Document(collection = "recommendation_buckets")
+@CompoundIndex(name = "prod-rec-ids", unique = true, def = "{'productId': 1, 'recommendationIds': 1}")
+public class RecommendationBucketEntity {
+
+    @Id
+    private String id;
+
+    private int productId;
+    private int count;
+    private List<Integer> recommendationIds;
+    private List<Item> recommendations;
+
+    public RecommendationBucketEntity() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<Integer> getRecommendationIds() {
+        return recommendationIds;
+    }
+
+    public List<Item> getRecommendations() {
+        return recommendations;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setRecommendationIds(List<Integer> recommendationIds) {
+        this.recommendationIds = recommendationIds;
+    }
+
+    public void setRecommendations(List<Item> recommendations) {
+        this.recommendations = recommendations;
+    }
+
+    public static class Item {
+
+        private int recommendationId;
+        private String author;
+        private int rating;
+        private String content;
+
+        public Item() {
+        }
+
+        public Item(int recommendationId, String author, int rating, String content) {
+            this.recommendationId = recommendationId;
+            this.author = author;
+            this.rating = rating;
+            this.content = content;
+        }
+
+        public int getRecommendationId() {
+            return recommendationId;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public int getRating() {
+            return rating;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setRecommendationId(int recommendationId) {
+            this.recommendationId = recommendationId;
+        }
+
+        public void setAuthor(String author) {
+            this.author = author;
+        }
+
+        public void setRating(int rating) {
+            this.rating = rating;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+}
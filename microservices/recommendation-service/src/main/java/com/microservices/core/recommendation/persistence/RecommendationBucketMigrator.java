@@ -0,0 +1,96 @@
+package com.microservices.core.recommendation.persistence;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Copies the recommendations collection into buckets at startup, enabled with
+ * app.recommendation.storage.migrate-to-buckets when the layout is bucket.
+ *
+ * Recommendations are read in (productId, recommendationId) order, so the buckets of a product are filled one after
+ * the other, and written with unordered bulk writes of {@code migration-batch-size} bucket upserts. Recommendations
+ * that are already in a bucket fail on the unique prod-rec-ids index and are skipped, i.e. the migration can be
+ * rerun after a failure. The recommendations collection is left as is, to be dropped once the buckets are verified.
+ * Deletes of products are not copied, so event consumers should be stopped until the migration is done.
+ */
+@Component
+@Order(0)
+@ConditionalOnExpression("'${app.recommendation.storage.layout:document}' == 'bucket' and ${app.recommendation.storage.migrate-to-buckets:false}")
+public class RecommendationBucketMigrator implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecommendationBucketMigrator.class);
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final BucketRecommendationStore store;
+
+    private final int batchSize;
+
+    @Autowired
+    public RecommendationBucketMigrator(
+            ReactiveMongoOperations mongoOperations,
+            BucketRecommendationStore store,
+            @Value("${app.recommendation.storage.migration-batch-size:1000}") int batchSize) {
+
+        this.mongoOperations = mongoOperations;
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate().block();
+    }
+
+    /**
+     * @return the number of recommendations copied into buckets, excluding the ones that already were
+     */
+    public Mono<Long> migrate() {
+        LOG.info("Migrates recommendations into buckets, in batches of {}", batchSize);
+
+        Query query = new Query().with(Sort.by("productId", "recommendationId"));
+
+        return mongoOperations.getCollection(store.getCollectionName())
+                .flatMapMany(collection -> mongoOperations.find(query, RecommendationEntity.class)
+                        .map(store::insertModel)
+                        .buffer(batchSize)
+                        .concatMap(models -> write(collection, models)))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> LOG.info("Migrated {} recommendations into buckets", count))
+                .doOnError(ex -> LOG.error("Migration of recommendations into buckets failed: {}", ex.toString()));
+    }
+
+    private Mono<Long> write(MongoCollection<Document> collection, List<WriteModel<Document>> models) {
+        return Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(false)))
+                .map(result -> (long) models.size())
+                .onErrorResume(MongoBulkWriteException.class, ex -> {
+                    boolean onlyDuplicates = ex.getWriteErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR_CODE);
+                    if (!onlyDuplicates) {
+                        return Mono.error(ex);
+                    }
+
+                    LOG.debug("Skipped {} recommendations that already are in buckets", ex.getWriteErrors().size());
+                    return Mono.just((long) (models.size() - ex.getWriteErrors().size()));
+                });
+    }
+}
@@ -0,0 +1,68 @@
+package com.microservices.core.recommendation.persistence;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Read-only projections of the recommendations in buckets, see RecommendationRepository. The buckets of a product
+ * are found with the prod-rec-ids index and unwound into one API object per recommendation.
+ */
+public interface RecommendationBucketRepository extends ReactiveCrudRepository<RecommendationBucketEntity, String> {
+    String UNWIND_RECOMMENDATIONS = "{ '$unwind': '$recommendations' }";
+
+    String PROJECT_RECOMMENDATION =
+            "{ '$project': { '_id': 0, 'productId': 1, 'recommendationId': '$recommendations.recommendationId', " +
+                    "'author': '$recommendations.author', 'rate': '$recommendations.rating', 'content': '$recommendations.content' } }";
+
+    Flux<RecommendationBucketEntity> findByProductId(int productId);
+
+    Mono<Long> deleteByProductId(int productId);
+
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0 } }",
+            UNWIND_RECOMMENDATIONS,
+            "{ '$sort': { 'recommendations.recommendationId': 1 } }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsByProductId(int productId);
+
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': { '$in': ?0 } } }",
+            UNWIND_RECOMMENDATIONS,
+            "{ '$sort': { 'productId': 1, 'recommendations.recommendationId': 1 } }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsByProductIdIn(Collection<Integer> productIds);
+
+    // Skips the buckets without any recommendationId after the cursor before unwinding
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0, 'recommendationIds': { '$gt': ?1 } } }",
+            UNWIND_RECOMMENDATIONS,
+            "{ '$match': { 'recommendations.recommendationId': { '$gt': ?1 } } }",
+            "{ '$sort': { 'recommendations.recommendationId': 1 } }",
+            "{ '$limit': ?2 }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsPage(int productId, int after, int limit);
+
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0 } }",
+            UNWIND_RECOMMENDATIONS,
+            "{ '$sort': { 'recommendations.rating': -1, 'recommendations.recommendationId': 1 } }",
+            "{ '$limit': ?1 }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findTopRecommendations(int productId, int limit);
+
+    @Aggregation(pipeline = {
+            UNWIND_RECOMMENDATIONS,
+            "{ '$project': { '_id': 0, 'productId': 1, 'author': '$recommendations.author' } }"})
+    Flux<Recommendation> findAllProductAuthors();
+
+    // Empty if the product has no buckets
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0 } }",
+            "{ '$group': { '_id': null, 'count': { '$sum': '$count' } } }"})
+    Mono<Long> sumCountByProductId(int productId);
+}
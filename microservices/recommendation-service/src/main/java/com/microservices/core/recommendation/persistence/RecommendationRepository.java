@@ -1,9 +1,59 @@
 package com.microservices.core.recommendation.persistence;
 
+import com.microservices.api.core.recommendation.Recommendation;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
 
 
 public interface RecommendationRepository extends ReactiveCrudRepository<RecommendationEntity, String> {
+    String PROJECT_RECOMMENDATION =
+            "{ '$project': { '_id': 0, 'productId': 1, 'recommendationId': 1, 'author': 1, 'rate': '$rating', 'content': 1, 'version': 1 } }";
+
     Flux<RecommendationEntity> findByProductId(int productId);
+
+    Flux<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+
+    Mono<Long> countByProductId(int productId);
+
+    Mono<Long> deleteByProductId(int productId);
+
+    /**
+     * Read-only projections that only fetch the fields of the API object and read them straight into it,
+     * i.e. without creating entities. The stored rating is projected as the rate of the API object and
+     * the serviceAddress is left empty for the caller to set.
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0 } }",
+            "{ '$sort': { 'recommendationId': 1 } }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsByProductId(int productId);
+
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': { '$in': ?0 } } }",
+            "{ '$sort': { 'productId': 1, 'recommendationId': 1 } }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsByProductIdIn(Collection<Integer> productIds);
+
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0, 'recommendationId': { '$gt': ?1 } } }",
+            "{ '$sort': { 'recommendationId': 1 } }",
+            "{ '$limit': ?2 }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findRecommendationsPage(int productId, int after, int limit);
+
+    // Served by the prod-rating-rec-id index, i.e. reads no more than limit documents
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': ?0 } }",
+            "{ '$sort': { 'rating': -1, 'recommendationId': 1 } }",
+            "{ '$limit': ?1 }",
+            PROJECT_RECOMMENDATION})
+    Flux<Recommendation> findTopRecommendations(int productId, int limit);
+
+    @Aggregation(pipeline = "{ '$project': { '_id': 0, 'productId': 1, 'author': 1 } }")
+    Flux<Recommendation> findAllProductAuthors();
 }
@@ -0,0 +1,56 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Count, sum of rates and number of recommendations per rate for the recommendations of a product.
+ * Updated with $inc or rebuilt by RecommendationStatisticsStore, the histogram is keyed by the rate as a string.
+ */
+@Document(collection = "recommendation_statistics")
+public class RecommendationStatisticsEntity {
+
+    @Id
+    private int productId;
+
+    private long count;
+    private long rateSum;
+    private Map<String, Long> histogram;
+
+    public RecommendationStatisticsEntity() {
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getRateSum() {
+        return rateSum;
+    }
+
+    public Map<String, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public void setRateSum(long rateSum) {
+        this.rateSum = rateSum;
+    }
+
+    public void setHistogram(Map<String, Long> histogram) {
+        this.histogram = histogram;
+    }
+}
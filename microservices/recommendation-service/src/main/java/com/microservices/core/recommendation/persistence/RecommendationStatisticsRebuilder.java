@@ -0,0 +1,42 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the statistics of all products from the stored recommendations at startup, enabled with
+ * app.recommendation.statistics.rebuild-on-startup, to backfill the statistics of recommendations created before
+ * they were maintained or to repair statistics that missed updates.
+ *
+ * Runs after RecommendationBucketMigrator, so a migration into buckets is done before the buckets are aggregated.
+ */
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "app.recommendation.statistics.rebuild-on-startup", havingValue = "true")
+public class RecommendationStatisticsRebuilder implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecommendationStatisticsRebuilder.class);
+
+    private final RecommendationStatisticsStore statisticsStore;
+
+    @Autowired
+    public RecommendationStatisticsRebuilder(RecommendationStatisticsStore statisticsStore) {
+        this.statisticsStore = statisticsStore;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        LOG.info("Rebuilds the recommendation statistics of all products");
+
+        statisticsStore.rebuildAll()
+                .doOnSuccess(v -> LOG.info("Rebuilt the recommendation statistics of all products"))
+                .doOnError(ex -> LOG.error("Rebuild of the recommendation statistics failed: {}", ex.toString()))
+                .block();
+    }
+}
@@ -0,0 +1,122 @@
+package com.microservices.core.recommendation.persistence;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Maintains one statistics document per product, keyed by productId. Created recommendations are added with a
+ * single atomic $inc upsert, so concurrent updates need no read or version check, and the document is removed
+ * together with the recommendations of the product. Reading the statistics is a lookup by id, independent of
+ * the number of recommendations.
+ *
+ * Since the $inc is a second write after the insert of a recommendation, the statistics of a product can miss
+ * recommendations if it fails, or if the recommendations were created before the statistics existed. rebuild
+ * recomputes the document of a product from its stored recommendations, and rebuildAll replaces the collection
+ * with the statistics of all products, both with a server-side aggregation over the collection of the
+ * RecommendationStore. Neither is isolated from concurrent writes, a recommendation created while the aggregation
+ * runs can be missing from the result until the product is rebuilt again.
+ */
+@Component
+public class RecommendationStatisticsStore {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final RecommendationStore store;
+
+    @Autowired
+    public RecommendationStatisticsStore(ReactiveMongoOperations mongoOperations, RecommendationStore store) {
+        this.mongoOperations = mongoOperations;
+        this.store = store;
+    }
+
+    public Mono<RecommendationStatisticsEntity> findByProductId(int productId) {
+        return mongoOperations.findById(productId, RecommendationStatisticsEntity.class);
+    }
+
+    public Mono<Void> add(int productId, Collection<Integer> rates) {
+        if (rates.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Update update = new Update()
+                .inc("count", rates.size())
+                .inc("rateSum", rates.stream().mapToLong(Integer::longValue).sum());
+        rates.stream()
+                .collect(groupingBy(identity(), counting()))
+                .forEach((rate, count) -> update.inc("histogram." + rate, count));
+
+        return mongoOperations.upsert(byProductId(productId), update, RecommendationStatisticsEntity.class).then();
+    }
+
+    public Mono<Void> remove(int productId) {
+        return mongoOperations.remove(byProductId(productId), RecommendationStatisticsEntity.class).then();
+    }
+
+    /**
+     * Replaces the statistics of productId with the ones computed from its stored recommendations, or removes
+     * them if the product has no recommendations.
+     */
+    public Mono<Void> rebuild(int productId) {
+        return store.countByProductId(productId)
+                .flatMap(count -> count == 0
+                        ? remove(productId)
+                        : aggregate(
+                                singletonList(new Document("$match", new Document("productId", productId))),
+                                new Document("$merge", new Document("into", getCollectionName())
+                                        .append("on", "_id")
+                                        .append("whenMatched", "replace")
+                                        .append("whenNotMatched", "insert"))));
+    }
+
+    /**
+     * Replaces all statistics with the ones computed from the stored recommendations, used to backfill the
+     * statistics of recommendations created before they were maintained. $out swaps the collection when the
+     * aggregation is done, so reads see either the old or the new statistics.
+     */
+    public Mono<Void> rebuildAll() {
+        return aggregate(emptyList(), new Document("$out", getCollectionName()));
+    }
+
+    // Counts per (productId, rating) first, so the histogram is built from one entry per rate
+    private Mono<Void> aggregate(List<Document> matchStages, Document outputStage) {
+        List<Document> pipeline = new ArrayList<>(matchStages);
+        pipeline.addAll(store.ratingStages());
+        pipeline.add(new Document("$group", new Document("_id", new Document("productId", "$productId").append("rating", "$rating"))
+                .append("n", new Document("$sum", 1L))));
+        pipeline.add(new Document("$group", new Document("_id", "$_id.productId")
+                .append("count", new Document("$sum", "$n"))
+                .append("rateSum", new Document("$sum", new Document("$multiply", Arrays.asList("$_id.rating", "$n"))))
+                .append("histogram", new Document("$push", new Document("k", new Document("$toString", "$_id.rating")).append("v", "$n")))));
+        pipeline.add(new Document("$set", new Document("histogram", new Document("$arrayToObject", "$histogram"))));
+        pipeline.add(outputStage);
+
+        return mongoOperations.getCollection(store.getCollectionName())
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()));
+    }
+
+    private String getCollectionName() {
+        return mongoOperations.getCollectionName(RecommendationStatisticsEntity.class);
+    }
+
+    private Query byProductId(int productId) {
+        return query(where("productId").is(productId));
+    }
+}
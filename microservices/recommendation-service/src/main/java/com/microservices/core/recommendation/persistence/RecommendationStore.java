@@ -0,0 +1,50 @@
+package com.microservices.core.recommendation.persistence;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage layout of the recommendations, selected per deployment with app.recommendation.storage.layout:
+ * one document per recommendation (document, the default) or recommendations packed into buckets per product
+ * (bucket). Both layouts reject a recommendationId that already exists for the product with a DuplicateKeyException,
+ * and both return the read-only projections of RecommendationRepository.
+ */
+public interface RecommendationStore {
+
+    Mono<RecommendationEntity> insert(RecommendationEntity entity);
+
+    Flux<Recommendation> findRecommendationsByProductId(int productId);
+
+    Flux<Recommendation> findRecommendationsByProductIdIn(Collection<Integer> productIds);
+
+    Flux<Recommendation> findRecommendationsPage(int productId, int after, int limit);
+
+    Flux<Recommendation> findTopRecommendations(int productId, int limit);
+
+    Flux<Recommendation> findAllProductAuthors();
+
+    Mono<Long> countByProductId(int productId);
+
+    Mono<Long> deleteByProductId(int productId);
+
+    /**
+     * Name of the collection that the write models of insertModel and deleteModel apply to, used for bulk writes.
+     */
+    String getCollectionName();
+
+    WriteModel<Document> insertModel(RecommendationEntity entity);
+
+    WriteModel<Document> deleteModel(int productId);
+
+    /**
+     * Aggregation stages that turn the documents of getCollectionName() into one document per recommendation with
+     * its productId and rating, used to rebuild the statistics from the stored recommendations.
+     */
+    List<Document> ratingStages();
+}
@@ -0,0 +1,233 @@
+package com.microservices.core.recommendation.services;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.microservices.core.recommendation.persistence.RecommendationStatisticsStore;
+import com.microservices.core.recommendation.persistence.RecommendationStore;
+import com.microservices.util.BulkEvents;
+import com.microservices.util.http.EventProcessingException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.microservices.api.event.Event.Type.DELETE;
+
+/**
+ * Applies a batch of recommendation events with unordered Mongo bulk writes, one insert per CREATE event
+ * and one delete of all recommendations of the product per DELETE event, using the write models of the
+ * configured RecommendationStore.
+ *
+ * Since an unordered bulk write gives no ordering guarantees, the batch is split into segments where a
+ * productId is never both deleted and created, segments are written one after the other.
+ * Events that fail, e.g. on a duplicate key, are reported one by one and sent to the DLQ,
+ * the rest of the batch is still applied. A duplicate of a recommendation that is stored with the same content is
+ * an event that was already applied, e.g. by an attempt that failed after a part of the bulk write was applied or by
+ * a redelivery, and counts as succeeded. The statistics of the products are then updated for the
+ * events that succeeded, with one upsert per product, and rebuilt from the stored recommendations of a
+ * product if its update fails.
+ */
+@Component
+public class BulkEventProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkEventProcessor.class);
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final RecommendationStore store;
+
+    private final RecommendationStatisticsStore statisticsStore;
+
+    private final RecommendationMapper mapper;
+
+    private final BulkEvents<Recommendation> bulkEvents;
+
+    @Autowired
+    public BulkEventProcessor(
+            ReactiveMongoOperations mongoOperations,
+            RecommendationStore store,
+            RecommendationStatisticsStore statisticsStore,
+            RecommendationMapper mapper,
+            StreamBridge streamBridge) {
+
+        this.mongoOperations = mongoOperations;
+        this.store = store;
+        this.statisticsStore = statisticsStore;
+        this.mapper = mapper;
+        this.bulkEvents = new BulkEvents<>(event -> streamBridge.send("deadLetters-out-0", event));
+    }
+
+    public Mono<Void> process(List<Event<Integer, Recommendation>> events) {
+        LOG.info("Process a batch of {} events...", events.size());
+
+        return Flux.fromIterable(bulkEvents.splitIntoSegments(events))
+                .concatMap(this::writeSegment)
+                .then();
+    }
+
+    private Mono<Void> writeSegment(List<Event<Integer, Recommendation>> segment) {
+        List<Event<Integer, Recommendation>> acceptedEvents = new ArrayList<>();
+        List<WriteModel<Document>> writeModels = new ArrayList<>();
+        Set<Integer> appliedDuplicateProductIds = new HashSet<>();
+
+        for (Event<Integer, Recommendation> event : segment) {
+            try {
+                writeModels.add(toWriteModel(event));
+                acceptedEvents.add(event);
+            } catch (RuntimeException ex) {
+                bulkEvents.sendToDeadLetters(event, ex.getMessage());
+            }
+        }
+
+        if (writeModels.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return mongoOperations.getCollection(store.getCollectionName())
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writeModels, new BulkWriteOptions().ordered(false))))
+                .doOnNext(result -> LOG.info("Bulk write of {} events done, inserted: {}, upserted: {}, modified: {}, deleted: {}",
+                        writeModels.size(), result.getInsertedCount(), result.getUpserts().size(), result.getModifiedCount(), result.getDeletedCount()))
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof MongoBulkWriteException)))
+                .thenReturn(acceptedEvents)
+                .onErrorResume(MongoBulkWriteException.class, ex -> resolveWriteErrors(acceptedEvents, ex, appliedDuplicateProductIds)
+                        .thenReturn(succeededEvents(acceptedEvents, ex)))
+                .onErrorResume(ex -> {
+                    LOG.warn("Bulk write of {} events failed, will send them to the DLQ, error: {}", acceptedEvents.size(), ex.toString());
+                    acceptedEvents.forEach(event -> bulkEvents.sendToDeadLetters(event, ex.toString()));
+                    return Mono.empty();
+                })
+                .flatMap(succeededEvents -> updateStatistics(succeededEvents, appliedDuplicateProductIds));
+    }
+
+    // The events of a segment never both delete and create recommendations of the same product, so the order is irrelevant.
+    // It is unknown whether the statistics of an already applied duplicate were updated, so its product is rebuilt instead
+    private Mono<Void> updateStatistics(List<Event<Integer, Recommendation>> succeededEvents, Set<Integer> rebuiltProductIds) {
+        Map<Integer, List<Integer>> createdRates = new HashMap<>();
+        Set<Integer> deletedProductIds = new HashSet<>();
+
+        for (Event<Integer, Recommendation> event : succeededEvents) {
+            if (event.getEventType() == DELETE) {
+                deletedProductIds.add(event.getKey());
+            } else {
+                createdRates.computeIfAbsent(event.getData().getProductId(), productId -> new ArrayList<>()).add(event.getData().getRate());
+            }
+        }
+
+        createdRates.keySet().removeAll(rebuiltProductIds);
+
+        return Flux.merge(
+                        Flux.fromIterable(createdRates.entrySet()).flatMap(e -> updateStatistics(e.getKey(), statisticsStore.add(e.getKey(), e.getValue()))),
+                        Flux.fromIterable(deletedProductIds).flatMap(productId -> updateStatistics(productId, statisticsStore.remove(productId))),
+                        Flux.fromIterable(rebuiltProductIds).flatMap(productId -> updateStatistics(productId, statisticsStore.rebuild(productId))))
+                .then();
+    }
+
+    // The writes of the events are already applied, so a failed update is repaired by rebuilding the statistics of the product
+    private Mono<Void> updateStatistics(int productId, Mono<Void> update) {
+        return update
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to update the statistics of productId: {}, will rebuild them, error: {}", productId, ex.toString());
+                    return statisticsStore.rebuild(productId);
+                })
+                .onErrorResume(ex -> {
+                    LOG.error("Failed to rebuild the statistics of productId: {}, they stay wrong until rebuilt, error: {}", productId, ex.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private List<Event<Integer, Recommendation>> succeededEvents(List<Event<Integer, Recommendation>> events, MongoBulkWriteException ex) {
+        Set<Integer> failedIndexes = new HashSet<>();
+        ex.getWriteErrors().forEach(error -> failedIndexes.add(error.getIndex()));
+
+        List<Event<Integer, Recommendation>> succeededEvents = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (!failedIndexes.contains(i)) {
+                succeededEvents.add(events.get(i));
+            }
+        }
+        return succeededEvents;
+    }
+
+    private WriteModel<Document> toWriteModel(Event<Integer, Recommendation> event) {
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                Recommendation recommendation = event.getData();
+                if (recommendation.getProductId() < 1) {
+                    throw new InvalidInputException("Invalid productId: " + recommendation.getProductId());
+                }
+
+                RecommendationEntity entity = mapper.apiToEntity(recommendation);
+                return store.insertModel(entity);
+
+            case DELETE:
+                return store.deleteModel(event.getKey());
+
+            default:
+                throw new EventProcessingException("Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event");
+        }
+    }
+
+    private Mono<Void> resolveWriteErrors(List<Event<Integer, Recommendation>> events, MongoBulkWriteException ex, Set<Integer> appliedDuplicateProductIds) {
+        LOG.info("Bulk write of {} events done with {} failed events", events.size(), ex.getWriteErrors().size());
+
+        return Flux.fromIterable(ex.getWriteErrors())
+                .concatMap(error -> {
+                    Event<Integer, Recommendation> event = events.get(error.getIndex());
+                    if (error.getCode() != DUPLICATE_KEY_ERROR_CODE) {
+                        bulkEvents.sendToDeadLetters(event, error.getMessage());
+                        return Mono.empty();
+                    }
+
+                    Recommendation recommendation = event.getData();
+                    return isStored(recommendation)
+                            .doOnNext(stored -> {
+                                if (stored) {
+                                    LOG.debug("Recommendation with productId: {}, recommendationId: {} is already stored, the event is skipped",
+                                            recommendation.getProductId(), recommendation.getRecommendationId());
+                                    appliedDuplicateProductIds.add(recommendation.getProductId());
+                                } else {
+                                    bulkEvents.sendToDeadLetters(event, "Duplicate key, Product Id: " + event.getKey() + ", Recommendation Id:" + recommendation.getRecommendationId());
+                                }
+                            });
+                })
+                .then();
+    }
+
+    // Looks up the recommendation by its id with a page of one recommendation, supported by both storage layouts
+    private Mono<Boolean> isStored(Recommendation recommendation) {
+        return store.findRecommendationsPage(recommendation.getProductId(), recommendation.getRecommendationId() - 1, 1)
+                .next()
+                .map(stored -> stored.getRecommendationId() == recommendation.getRecommendationId()
+                        && Objects.equals(stored.getAuthor(), recommendation.getAuthor())
+                        && stored.getRate() == recommendation.getRate()
+                        && Objects.equals(stored.getContent(), recommendation.getContent()))
+                .defaultIfEmpty(false)
+                .onErrorReturn(false);
+    }
+}
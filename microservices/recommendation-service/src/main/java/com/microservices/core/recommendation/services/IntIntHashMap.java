@@ -0,0 +1,149 @@
+package com.microservices.core.recommendation.services;
+
+/**
+ * Open addressing hash map from int to int without boxing, using linear probing and backward shift deletion.
+ * Key 0 marks an empty slot and can't be used, entries whose value drops to 0 are removed.
+ * Not thread safe.
+ */
+final class IntIntHashMap {
+
+    interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntHashMap() {
+        this(4);
+    }
+
+    IntIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(Math.max(4, expectedSize * 2)));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int key) {
+        int slot = findSlot(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    /**
+     * Adds delta to the value of key, an absent key has the value 0.
+     *
+     * @return the new value
+     */
+    int addTo(int key, int delta) {
+        checkKey(key);
+        int slot = findSlot(key);
+
+        if (keys[slot] == key) {
+            int value = values[slot] + delta;
+            if (value == 0) {
+                removeSlot(slot);
+            } else {
+                values[slot] = value;
+            }
+            return value;
+        }
+
+        if (delta != 0) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        }
+        return delta;
+    }
+
+    int remove(int key) {
+        checkKey(key);
+        int slot = findSlot(key);
+        if (keys[slot] != key) {
+            return 0;
+        }
+        int value = values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    // Returns the slot of the key or the empty slot where it would be inserted
+    private int findSlot(int key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Moves back the following entries of the probe sequence that may fill the gap, so lookups never stop too early
+    private void removeSlot(int gap) {
+        size--;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (keys[slot] == EMPTY) {
+                break;
+            }
+            int ideal = hash(keys[slot]) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int size) {
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    static void checkKey(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+        }
+    }
+}
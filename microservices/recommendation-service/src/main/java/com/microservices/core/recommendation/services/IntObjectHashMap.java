@@ -0,0 +1,112 @@
+package com.microservices.core.recommendation.services;
+
+import java.util.function.IntFunction;
+
+import static com.microservices.core.recommendation.services.IntIntHashMap.checkKey;
+import static com.microservices.core.recommendation.services.IntIntHashMap.hash;
+import static com.microservices.core.recommendation.services.IntIntHashMap.tableSizeFor;
+
+/**
+ * Open addressing hash map from int to objects without boxing the keys, using linear probing and backward
+ * shift deletion like IntIntHashMap. Key 0 marks an empty slot and can't be used. Not thread safe.
+ */
+final class IntObjectHashMap<V> {
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    IntObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(Math.max(4, expectedSize * 2)));
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = findSlot(key);
+        return keys[slot] == key ? (V) values[slot] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V computeIfAbsent(int key, IntFunction<V> factory) {
+        checkKey(key);
+        int slot = findSlot(key);
+
+        if (keys[slot] == key) {
+            return (V) values[slot];
+        }
+
+        V value = factory.apply(key);
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        checkKey(key);
+        int slot = findSlot(key);
+        if (keys[slot] != key) {
+            return null;
+        }
+        V value = (V) values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    private int findSlot(int key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeSlot(int gap) {
+        size--;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (keys[slot] == EMPTY) {
+                break;
+            }
+            int ideal = hash(keys[slot]) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -3,14 +3,25 @@ package com.microservices.core.recommendation.services;
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.recommendation.RecommendationService;
 import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.util.http.EventProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.microservices.api.event.Event.Type.CREATE;
 
 @Configuration
 public class MessageProcessorConfig {
@@ -19,12 +30,56 @@ public class MessageProcessorConfig {
 
     private final RecommendationService recommendationService;
 
+    private final StreamBridge streamBridge;
+
+    private final BulkEventProcessor bulkEventProcessor;
+
+    private final TopRecommendationsIndex topRecommendationsIndex;
+
+    private final SimilarProductsEngine similarProductsEngine;
+
+    private final int concurrency;
+
+    private final int batchSize;
+
+    private final int batchTimeoutMs;
+
     @Autowired
-    public MessageProcessorConfig(RecommendationService recommendationService) {
+    public MessageProcessorConfig(
+            RecommendationService recommendationService,
+            StreamBridge streamBridge,
+            BulkEventProcessor bulkEventProcessor,
+            TopRecommendationsIndex topRecommendationsIndex,
+            SimilarProductsEngine similarProductsEngine,
+            @Value("${app.message-processor.concurrency:4}") int concurrency,
+            @Value("${app.message-processor.batch.size:500}") int batchSize,
+            @Value("${app.message-processor.batch.timeout-ms:100}") int batchTimeoutMs) {
+
         this.recommendationService = recommendationService;
+        this.streamBridge = streamBridge;
+        this.bulkEventProcessor = bulkEventProcessor;
+        this.topRecommendationsIndex = topRecommendationsIndex;
+        this.similarProductsEngine = similarProductsEngine;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
+    /**
+     * Listens, without a consumer group, on the recommendations destination, so every instance sees every event
+     * and can update its in-memory top recommendations and co-occurrences, also for events processed by other instances.
+     * The indexes are updated once the write of the event shows up in the store, without holding up the consumer.
+     */
     @Bean
+    public Consumer<Event<Integer, Recommendation>> indexUpdater() {
+        return event -> {
+            LOG.debug("Update in-memory indexes for {} event for productId: {}", event.getEventType(), event.getKey());
+            Mono.when(topRecommendationsIndex.apply(event), similarProductsEngine.apply(event)).subscribe();
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "blocking", matchIfMissing = true)
     public Consumer<Event<Integer, Recommendation>> messageProcessor() {
         return event -> {
 
@@ -53,4 +108,90 @@ public class MessageProcessorConfig {
             LOG.info("Message processing done!");
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Processes events without blocking the binder thread. Events are spread over a fixed number of
+     * lanes by key, each lane is processed in order and up to {@code concurrency} lanes run in parallel,
+     * i.e. events for the same productId keep their order while different productIds are processed concurrently.
+     *
+     * Retries and DLQ handling of the binder do not apply to reactive functions, so failed events
+     * are retried here and then published to the deadLetters-out-0 binding, i.e. to recommendations.dlq instead of the DLQ
+     * bound by the binder. Events without a key, or CREATE events without data, go there right away, since they
+     * can't be assigned to a lane. The binder acknowledges a message when it is emitted into the Flux, before it is
+     * processed, so the events in flight when an instance stops are lost. Use the blocking mode where every event
+     * must be delivered at least once.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "reactive")
+    public Function<Flux<Event<Integer, Recommendation>>, Mono<Void>> reactiveMessageProcessor() {
+        LOG.info("Creates a reactive messageProcessor with concurrency = {}", concurrency);
+
+        return events -> events
+                .filter(this::isProcessable)
+                .groupBy(event -> Math.floorMod(event.getKey(), concurrency))
+                .flatMap(lane -> lane.concatMap(this::processEvent), concurrency)
+                .then();
+    }
+
+    /**
+     * Collects events until {@code batch.size} events are received or {@code batch.timeout-ms} has passed,
+     * and applies each batch with Mongo bulk writes. Batches are applied one at a time to keep the order of events.
+     * Events without a key, or CREATE events without data, are sent to the DLQ before they are buffered, as in the
+     * reactive mode.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "batch")
+    public Function<Flux<Event<Integer, Recommendation>>, Mono<Void>> batchMessageProcessor() {
+        LOG.info("Creates a batching messageProcessor with batch size = {} and timeout = {} ms", batchSize, batchTimeoutMs);
+
+        return events -> events
+                .filter(this::isProcessable)
+                .bufferTimeout(batchSize, Duration.ofMillis(batchTimeoutMs))
+                .concatMap(bulkEventProcessor::process)
+                .then();
+    }
+
+    // An error here would terminate the inbound Flux and stop the binding for good, so invalid events are dead-lettered
+    private boolean isProcessable(Event<Integer, Recommendation> event) {
+        if (event.getKey() != null && (event.getEventType() != CREATE || event.getData() != null)) {
+            return true;
+        }
+
+        LOG.warn("Invalid {} event for productId: {}, will send it to the DLQ", event.getEventType(), event.getKey());
+        streamBridge.send("deadLetters-out-0", event);
+        return false;
+    }
+
+    private Mono<Void> processEvent(Event<Integer, Recommendation> event) {
+        return Mono.defer(() -> {
+                    LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+                    switch (event.getEventType()) {
+
+                        case CREATE:
+                            Recommendation recommendation = event.getData();
+                            LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(), recommendation.getRecommendationId());
+                            return recommendationService.createRecommendation(recommendation).then();
+
+                        case DELETE:
+                            int productId = event.getKey();
+                            LOG.info("Delete recommendations with ProductID: {}", productId);
+                            return recommendationService.deleteRecommendations(productId);
+
+                        default:
+                            String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                            LOG.warn(errorMessage);
+                            return Mono.<Void>error(new EventProcessingException(errorMessage));
+                    }
+                })
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof InvalidInputException) && !(ex instanceof EventProcessingException)))
+                .doOnSuccess(v -> LOG.info("Message processing done!"))
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to process event for productId: {}, will send it to the DLQ, error: {}", event.getKey(), ex.toString());
+                    streamBridge.send("deadLetters-out-0", event);
+                    return Mono.empty();
+                });
+    }
+}
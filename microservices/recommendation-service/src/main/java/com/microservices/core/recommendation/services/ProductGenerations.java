@@ -0,0 +1,35 @@
+package com.microservices.core.recommendation.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A generation per productId that is incremented on every invalidation of the in-memory state of the product, so a
+ * reader can take the generation before it reads from the store and tell afterwards whether it was invalidated
+ * meanwhile. Only products invalidated within the last ten minutes are kept, the others are at generation 0, which
+ * is far longer than a read from the store takes.
+ */
+class ProductGenerations {
+
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 10;
+
+    private final Cache<Integer, Long> generations;
+
+    ProductGenerations(long maximumProducts) {
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maximumProducts)
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                .build();
+    }
+
+    long get(int productId) {
+        Long generation = generations.getIfPresent(productId);
+        return generation == null ? 0 : generation;
+    }
+
+    void increment(int productId) {
+        generations.asMap().merge(productId, 1L, Long::sum);
+    }
+}
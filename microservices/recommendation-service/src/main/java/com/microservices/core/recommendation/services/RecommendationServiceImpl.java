@@ -2,9 +2,13 @@ package com.microservices.core.recommendation.services;
 
 import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.core.recommendation.RecommendationService;
+import com.microservices.api.core.recommendation.RecommendationStatistics;
+import com.microservices.api.core.recommendation.SimilarProduct;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.core.recommendation.persistence.RecommendationEntity;
-import com.microservices.core.recommendation.persistence.RecommendationRepository;
+import com.microservices.core.recommendation.persistence.RecommendationStatisticsEntity;
+import com.microservices.core.recommendation.persistence.RecommendationStatisticsStore;
+import com.microservices.core.recommendation.persistence.RecommendationStore;
 import com.microservices.util.http.ServiceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,20 +18,46 @@ import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.microservices.util.ProductIds.validateProductIds;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+
 @RestController
 public class RecommendationServiceImpl implements RecommendationService {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceImpl.class);
 
-    private final RecommendationRepository repository;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final RecommendationStore store;
+
+    private final RecommendationStatisticsStore statisticsStore;
+
+    private final TopRecommendationsIndex topRecommendationsIndex;
+
+    private final SimilarProductsEngine similarProductsEngine;
 
     private final RecommendationMapper mapper;
 
     private final ServiceUtil serviceUtil;
 
     @Autowired
-    public RecommendationServiceImpl(RecommendationRepository repository, RecommendationMapper mapper, ServiceUtil serviceUtil) {
-        this.repository = repository;
+    public RecommendationServiceImpl(
+            RecommendationStore store,
+            RecommendationStatisticsStore statisticsStore,
+            TopRecommendationsIndex topRecommendationsIndex,
+            SimilarProductsEngine similarProductsEngine,
+            RecommendationMapper mapper,
+            ServiceUtil serviceUtil) {
+
+        this.store = store;
+        this.statisticsStore = statisticsStore;
+        this.topRecommendationsIndex = topRecommendationsIndex;
+        this.similarProductsEngine = similarProductsEngine;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
     }
@@ -41,14 +71,31 @@ public class RecommendationServiceImpl implements RecommendationService {
 
         RecommendationEntity entity = mapper.apiToEntity(body);
 
-        return repository.save(entity)
+        // A redelivered event whose statistics update failed ends up here as a duplicate, so its statistics are rebuilt
+        return store.insert(entity)
                 .log()
-                .onErrorMap(
+                .onErrorResume(
                         DuplicateKeyException.class,
-                        ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId()))
+                        ex -> rebuildStatistics(body.getProductId())
+                                .onErrorResume(rebuildEx -> {
+                                    LOG.warn("Failed to rebuild the statistics of productId: {}, error: {}", body.getProductId(), rebuildEx.toString());
+                                    return Mono.empty();
+                                })
+                                .then(Mono.<RecommendationEntity>error(new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId()))))
+                .flatMap(e -> statisticsStore.add(e.getProductId(), singletonList(e.getRating()))
+                        .onErrorResume(ex -> {
+                            LOG.warn("Failed to add to the statistics of productId: {}, will rebuild them, error: {}", e.getProductId(), ex.toString());
+                            return rebuildStatistics(e.getProductId());
+                        })
+                        .thenReturn(e))
                 .map(mapper::entityToApi);
     }
 
+    private Mono<Void> rebuildStatistics(int productId) {
+        return statisticsStore.rebuild(productId)
+                .doOnSuccess(v -> LOG.debug("Rebuilt the statistics of productId: {}", productId));
+    }
+
     @Override
     public Flux<Recommendation> getRecommendations(int productId) {
 
@@ -56,12 +103,109 @@ public class RecommendationServiceImpl implements RecommendationService {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
-        return repository.findByProductId(productId)
+        return store.findRecommendationsByProductId(productId)
+                .log()
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsByProductIds(List<Integer> productIds) {
+
+        validateProductIds(productIds);
+
+        LOG.debug("getRecommendationsByProductIds: tries to find recommendations for {} product ids", productIds.size());
+
+        return store.findRecommendationsByProductIdIn(productIds)
+                .log()
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsPage(int productId, int after, int limit) {
+
+        validatePage(productId, after, limit);
+
+        LOG.debug("getRecommendationsPage: tries to find at most {} recommendations after recommendationId: {} for productId: {}", limit, after, productId);
+
+        return store.findRecommendationsPage(productId, after, limit)
+                .log()
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Recommendation> getTopRecommendations(int productId, int k) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        if (k < 1 || k > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid k: " + k + ", expected 1 to " + MAX_PAGE_SIZE);
+        }
+
+        LOG.debug("getTopRecommendations: tries to find the top {} recommendations for productId: {}", k, productId);
+
+        return topRecommendationsIndex.getTop(productId, k)
                 .log()
-                .map(mapper::entityToApi)
                 .map(this::setServiceAddress);
     }
 
+    @Override
+    public Flux<SimilarProduct> getSimilarProducts(int productId, int k) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        int maxNeighbors = similarProductsEngine.getMaxNeighbors();
+        if (k < 1 || k > maxNeighbors) {
+            throw new InvalidInputException("Invalid k: " + k + ", expected 1 to " + maxNeighbors);
+        }
+
+        return Flux.fromIterable(similarProductsEngine.getSimilarProducts(productId, k))
+                .map(e -> {
+                    e.setServiceAddress(serviceUtil.getServiceAddress());
+                    return e;
+                });
+    }
+
+    @Override
+    public Mono<Long> countRecommendations(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        return store.countByProductId(productId);
+    }
+
+    @Override
+    public Mono<RecommendationStatistics> getRecommendationStatistics(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        return statisticsStore.findByProductId(productId)
+                .log()
+                .map(this::toStatistics)
+                .defaultIfEmpty(new RecommendationStatistics(productId, 0, 0, emptyMap(), null))
+                .map(e -> {
+                    e.setServiceAddress(serviceUtil.getServiceAddress());
+                    return e;
+                });
+    }
+
+    private RecommendationStatistics toStatistics(RecommendationStatisticsEntity entity) {
+        Map<Integer, Long> histogram = new TreeMap<>();
+        if (entity.getHistogram() != null) {
+            entity.getHistogram().forEach((rate, count) -> histogram.put(Integer.valueOf(rate), count));
+        }
+
+        double averageRate = entity.getCount() == 0 ? 0 : (double) entity.getRateSum() / entity.getCount();
+        return new RecommendationStatistics(entity.getProductId(), entity.getCount(), averageRate, histogram, null);
+    }
+
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
 
@@ -70,7 +214,25 @@ public class RecommendationServiceImpl implements RecommendationService {
         }
 
         LOG.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}", productId);
-        return repository.deleteAll(repository.findByProductId(productId));
+        return store.deleteByProductId(productId)
+                .log()
+                .doOnNext(count -> LOG.debug("deleteRecommendations: deleted {} entities", count))
+                .then(statisticsStore.remove(productId));
+    }
+
+    private void validatePage(int productId, int after, int limit) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        if (after < 0) {
+            throw new InvalidInputException("Invalid after: " + after);
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + MAX_PAGE_SIZE);
+        }
     }
 
     private Recommendation setServiceAddress(Recommendation e) {
@@ -0,0 +1,331 @@
+package com.microservices.core.recommendation.services;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.core.recommendation.SimilarProduct;
+import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.ServiceUnavailableException;
+import com.microservices.core.recommendation.persistence.RecommendationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Item-to-item co-occurrence of products: two products co-occur once for every author that recommended both.
+ *
+ * Counts are kept in memory, per product in an IntIntHashMap from the other productId to the count, and every
+ * product keeps a precomputed list of its {@code max-neighbors} most co-occurring products. A recommendation
+ * from an author adds one to the counts of the new product with each product the author already recommended,
+ * and deleting the recommendations of a product subtracts them again. Lookups copy at most k entries of the
+ * precomputed list and never touch the database.
+ *
+ * The counts are loaded from the database at startup, and then updated from the events on the recommendations
+ * destination. Since a pair only counts once per author, events that are replayed or also seen by the initial load
+ * don't change the counts. The events are also seen when their insert is rejected or sent to the dead letters, so a
+ * CREATE is only counted once StoredWrites finds the recommendation in the store, and not if its product was deleted
+ * meanwhile, which is told by a generation per product that every DELETE increments. Loading runs as an application runner and blocks it, like the product catalog, and
+ * products deleted while loading are not added by the load, since the cursor can still return their
+ * recommendations. Lookups fail with a ServiceUnavailableException until the load is done, instead of returning
+ * partial lists.
+ */
+@Component
+public class SimilarProductsEngine implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimilarProductsEngine.class);
+
+    private static final long MAXIMUM_DELETED_PRODUCTS = 100_000;
+
+    private final RecommendationStore store;
+
+    private final StoredWrites storedWrites;
+
+    private final boolean enabled;
+
+    private final int maxNeighbors;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // author -> productId -> number of recommendations of the product from the author
+    private final Map<String, IntIntHashMap> productsByAuthor = new HashMap<>();
+
+    private final IntObjectHashMap<Set<String>> authorsByProduct = new IntObjectHashMap<>(1024);
+
+    private final IntObjectHashMap<Neighbors> neighborsByProduct = new IntObjectHashMap<>(1024);
+
+    private final ProductGenerations generations = new ProductGenerations(MAXIMUM_DELETED_PRODUCTS);
+
+    // Products deleted during the load, null once the counts are loaded
+    private Set<Integer> deletedWhileLoading = new HashSet<>();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public SimilarProductsEngine(
+            RecommendationStore store,
+            StoredWrites storedWrites,
+            @Value("${app.recommendation.similar.enabled:true}") boolean enabled,
+            @Value("${app.recommendation.similar.max-neighbors:20}") int maxNeighbors) {
+
+        this.store = store;
+        this.storedWrites = storedWrites;
+        this.enabled = enabled;
+        this.maxNeighbors = maxNeighbors;
+    }
+
+    public int getMaxNeighbors() {
+        return maxNeighbors;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        long count = store.findAllProductAuthors()
+                .doOnNext(r -> load(r.getProductId(), r.getAuthor()))
+                .count()
+                .block();
+
+        lock.writeLock().lock();
+        try {
+            deletedWhileLoading = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LOG.info("Loaded the co-occurrences of {} recommendations", count);
+    }
+
+    /**
+     * Applies the event, a CREATE once its recommendation shows up in the store.
+     *
+     * @return completes when the event is applied
+     */
+    public Mono<Void> apply(Event<Integer, Recommendation> event) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                Recommendation recommendation = event.getData();
+                if (recommendation != null && recommendation.getProductId() > 0 && recommendation.getAuthor() != null) {
+                    return addWhenStored(recommendation);
+                }
+                return Mono.empty();
+
+            case DELETE:
+                if (event.getKey() != null && event.getKey() > 0) {
+                    removeProduct(event.getKey());
+                }
+                return Mono.empty();
+
+            default:
+                LOG.debug("Ignores {} event for productId: {}", event.getEventType(), event.getKey());
+                return Mono.empty();
+        }
+    }
+
+    public List<SimilarProduct> getSimilarProducts(int productId, int k) {
+        if (enabled && !loaded) {
+            throw new ServiceUnavailableException("Similar products are not loaded yet, try again later");
+        }
+
+        lock.readLock().lock();
+        try {
+            Neighbors neighbors = neighborsByProduct.get(productId);
+            return neighbors == null ? new ArrayList<>() : neighbors.top(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load(int productId, String author) {
+        lock.writeLock().lock();
+        try {
+            if (!deletedWhileLoading.contains(productId)) {
+                add(productId, author);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The store can still return the recommendation of a deleted product until the delete is committed, so it is not
+    // counted if its product was deleted after the event arrived
+    private Mono<Void> addWhenStored(Recommendation recommendation) {
+        int productId = recommendation.getProductId();
+        return Mono.defer(() -> {
+            long generation = generations.get(productId);
+            return storedWrites.created(recommendation)
+                    .doOnNext(stored -> addUnlessDeleted(productId, stored.getAuthor(), generation));
+        }).then();
+    }
+
+    private void addUnlessDeleted(int productId, String author, long generation) {
+        lock.writeLock().lock();
+        try {
+            if (generations.get(productId) == generation) {
+                add(productId, author);
+            } else {
+                LOG.debug("Skips the recommendation from {} for productId: {}, the product was deleted meanwhile", author, productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void add(int productId, String author) {
+        lock.writeLock().lock();
+        try {
+            IntIntHashMap products = productsByAuthor.computeIfAbsent(author, a -> new IntIntHashMap());
+            if (products.addTo(productId, 1) > 1) {
+                return;
+            }
+
+            authorsByProduct.computeIfAbsent(productId, id -> new HashSet<>()).add(author);
+            products.forEach((otherProductId, recommendations) -> {
+                if (otherProductId != productId) {
+                    neighbors(productId).increment(otherProductId);
+                    neighbors(otherProductId).increment(productId);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeProduct(int productId) {
+        lock.writeLock().lock();
+        try {
+            generations.increment(productId);
+            if (deletedWhileLoading != null) {
+                deletedWhileLoading.add(productId);
+            }
+
+            Set<String> authors = authorsByProduct.remove(productId);
+            if (authors == null) {
+                return;
+            }
+
+            for (String author : authors) {
+                IntIntHashMap products = productsByAuthor.get(author);
+                products.remove(productId);
+
+                if (products.size() == 0) {
+                    productsByAuthor.remove(author);
+                } else {
+                    products.forEach((otherProductId, recommendations) -> decrement(otherProductId, productId));
+                }
+            }
+            neighborsByProduct.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Neighbors neighbors(int productId) {
+        return neighborsByProduct.computeIfAbsent(productId, id -> new Neighbors(maxNeighbors));
+    }
+
+    private void decrement(int productId, int otherProductId) {
+        Neighbors neighbors = neighborsByProduct.get(productId);
+        if (neighbors != null && neighbors.decrement(otherProductId) == 0) {
+            neighborsByProduct.remove(productId);
+        }
+    }
+
+    /**
+     * The co-occurrence counts of a product and its top list, sorted by count descending and then productId.
+     */
+    static final class Neighbors {
+
+        private final IntIntHashMap counts = new IntIntHashMap();
+
+        private final int[] topIds;
+        private final int[] topCounts;
+        private int topSize;
+
+        Neighbors(int capacity) {
+            this.topIds = new int[capacity];
+            this.topCounts = new int[capacity];
+        }
+
+        void increment(int productId) {
+            offer(productId, counts.addTo(productId, 1));
+        }
+
+        /**
+         * @return the number of co-occurring products left
+         */
+        int decrement(int productId) {
+            counts.addTo(productId, -1);
+            if (indexOf(productId) >= 0) {
+                // Another product may now belong to the top list, rebuild it from the counts
+                topSize = 0;
+                counts.forEach(this::offer);
+            }
+            return counts.size();
+        }
+
+        List<SimilarProduct> top(int k) {
+            int n = Math.min(k, topSize);
+            List<SimilarProduct> top = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                top.add(new SimilarProduct(topIds[i], topCounts[i], null));
+            }
+            return top;
+        }
+
+        // Adds or moves up productId in the top list if count ranks it among the top
+        private void offer(int productId, int count) {
+            int i = indexOf(productId);
+            if (i < 0) {
+                if (topSize < topIds.length) {
+                    i = topSize++;
+                } else if (ranksBefore(productId, count, topSize - 1)) {
+                    i = topSize - 1;
+                } else {
+                    return;
+                }
+            }
+
+            while (i > 0 && ranksBefore(productId, count, i - 1)) {
+                topIds[i] = topIds[i - 1];
+                topCounts[i] = topCounts[i - 1];
+                i--;
+            }
+            topIds[i] = productId;
+            topCounts[i] = count;
+        }
+
+        private boolean ranksBefore(int productId, int count, int i) {
+            return count > topCounts[i] || (count == topCounts[i] && productId < topIds[i]);
+        }
+
+        private int indexOf(int productId) {
+            for (int i = 0; i < topSize; i++) {
+                if (topIds[i] == productId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
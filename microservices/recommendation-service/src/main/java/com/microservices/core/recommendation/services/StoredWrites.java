@@ -0,0 +1,84 @@
+package com.microservices.core.recommendation.services;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.core.recommendation.persistence.RecommendationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Tells when the write of an event on the recommendations destination shows up in the RecommendationStore.
+ *
+ * The indexUpdater consumer of every instance sees an event at the same time as the messageProcessor that writes it,
+ * and also sees events whose write is rejected, e.g. a duplicate recommendationId, or sent to the dead letters. The
+ * in-memory indexes therefore only apply an event once the store shows its write. The store is read up to
+ * {@code attempts} times, {@code interval-ms} apart, to cover the retries of the messageProcessor, a write that
+ * doesn't show up by then is taken as rejected.
+ */
+@Component
+public class StoredWrites {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StoredWrites.class);
+
+    private final RecommendationStore store;
+
+    private final int attempts;
+
+    private final Duration interval;
+
+    @Autowired
+    public StoredWrites(
+            RecommendationStore store,
+            @Value("${app.recommendation.stored-writes.attempts:6}") int attempts,
+            @Value("${app.recommendation.stored-writes.interval-ms:500}") long intervalMs) {
+
+        this.store = store;
+        this.attempts = Math.max(1, attempts);
+        this.interval = Duration.ofMillis(intervalMs);
+    }
+
+    /**
+     * @return the stored recommendation once one with the recommendationId, author, rate and content of the given
+     * one is in the store, empty if it doesn't show up
+     */
+    public Mono<Recommendation> created(Recommendation recommendation) {
+        int productId = recommendation.getProductId();
+        int recommendationId = recommendation.getRecommendationId();
+
+        // Looks up the recommendation by its id with a page of one recommendation, supported by both storage layouts
+        return poll(() -> store.findRecommendationsPage(productId, recommendationId - 1, 1)
+                        .next()
+                        .filter(stored -> stored.getRecommendationId() == recommendationId
+                                && Objects.equals(stored.getAuthor(), recommendation.getAuthor())
+                                && stored.getRate() == recommendation.getRate()
+                                && Objects.equals(stored.getContent(), recommendation.getContent())),
+                "recommendation " + productId + "/" + recommendationId);
+    }
+
+    /**
+     * @return the productId once the product has no recommendations in the store, empty if they don't disappear
+     */
+    public Mono<Integer> deleted(int productId) {
+        return poll(() -> store.countByProductId(productId)
+                        .filter(count -> count == 0)
+                        .map(count -> productId),
+                "the deleted recommendations of product " + productId);
+    }
+
+    private <T> Mono<T> poll(Supplier<Mono<T>> check, String write) {
+        return Mono.defer(check)
+                .repeatWhenEmpty(repeats -> repeats.take(attempts - 1).delayElements(interval))
+                .switchIfEmpty(Mono.fromRunnable(() -> LOG.debug("The write of {} is not in the store after {} attempts", write, attempts)))
+                .onErrorResume(error -> {
+                    LOG.warn("Failed to look up the write of {} in the store: {}", write, error.toString());
+                    return Mono.empty();
+                });
+    }
+}
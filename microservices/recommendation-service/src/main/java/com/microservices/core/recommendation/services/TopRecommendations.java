@@ -0,0 +1,73 @@
+package com.microservices.core.recommendation.services;
+
+import com.microservices.api.core.recommendation.Recommendation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The best {@code capacity} recommendations of a product, ordered by rate descending and then recommendationId,
+ * built once from the best recommendations in the database in a min-heap of at most capacity entries. The heap is
+ * not updated after that: TopRecommendationsIndex replaces it when admits tells that a new recommendation would
+ * enter it.
+ */
+class TopRecommendations {
+
+    static final Comparator<Recommendation> BEST_FIRST = Comparator
+            .comparingInt(Recommendation::getRate).reversed()
+            .thenComparingInt(Recommendation::getRecommendationId);
+
+    private final int capacity;
+
+    private final PriorityQueue<Recommendation> heap;
+
+    private final Set<Integer> recommendationIds = new HashSet<>();
+
+    TopRecommendations(int capacity, List<Recommendation> best) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity, BEST_FIRST.reversed());
+        best.forEach(this::add);
+    }
+
+    synchronized void add(Recommendation recommendation) {
+        if (recommendationIds.contains(recommendation.getRecommendationId())) {
+            return;
+        }
+
+        if (heap.size() < capacity) {
+            heap.add(recommendation);
+            recommendationIds.add(recommendation.getRecommendationId());
+
+        } else if (BEST_FIRST.compare(recommendation, heap.peek()) < 0) {
+            recommendationIds.remove(heap.poll().getRecommendationId());
+            heap.add(recommendation);
+            recommendationIds.add(recommendation.getRecommendationId());
+        }
+    }
+
+    // True if adding the recommendation would change the heap, i.e. it is not in it and ranks among the best
+    synchronized boolean admits(Recommendation recommendation) {
+        if (recommendationIds.contains(recommendation.getRecommendationId())) {
+            return false;
+        }
+        return heap.size() < capacity || BEST_FIRST.compare(recommendation, heap.peek()) < 0;
+    }
+
+    // Returns copies since the caller sets the serviceAddress
+    synchronized List<Recommendation> top(int k) {
+        List<Recommendation> sorted = new ArrayList<>(heap);
+        sorted.sort(BEST_FIRST);
+
+        List<Recommendation> top = new ArrayList<>(Math.min(k, sorted.size()));
+        for (Recommendation r : sorted.subList(0, Math.min(k, sorted.size()))) {
+            Recommendation copy = new Recommendation(r.getProductId(), r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null);
+            copy.setVersion(r.getVersion());
+            top.add(copy);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,165 @@
+package com.microservices.core.recommendation.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.api.event.Event;
+import com.microservices.core.recommendation.persistence.RecommendationStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the best recommendations of hot products from in-memory heaps of the {@code heap-size} best ones.
+ *
+ * A heap is loaded from the RecommendationStore on the first lookup of a product and never updated after that, it
+ * is invalidated instead, and reloaded on the next lookup, by the events on the recommendations destination that
+ * every instance sees through the indexUpdater consumer. The consumer sees an event before its write is committed,
+ * and also sees rejected writes, so a CREATE only invalidates the heap once StoredWrites finds the recommendation in
+ * the store, and only if the heap lacks it while it ranks among the best. A DELETE invalidates the heap at once and
+ * again when the recommendations are gone from the store. Every invalidation increments the generation of the
+ * product, and a heap whose load started before the last invalidation is returned but not cached.
+ *
+ * At most {@code maximum-products} heaps are kept, the least recently used are evicted. The time-to-live bounds the
+ * staleness of heaps that missed an event, e.g. a write that showed up in the store only after the last attempt of
+ * StoredWrites. Lookups of more than {@code heap-size} recommendations go to the database.
+ */
+@Component
+public class TopRecommendationsIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopRecommendationsIndex.class);
+
+    private final RecommendationStore store;
+
+    private final StoredWrites storedWrites;
+
+    private final boolean enabled;
+
+    private final int heapSize;
+
+    private final Cache<Integer, TopRecommendations> heaps;
+
+    private final ProductGenerations generations;
+
+    @Autowired
+    public TopRecommendationsIndex(
+            MeterRegistry registry,
+            RecommendationStore store,
+            StoredWrites storedWrites,
+            @Value("${app.recommendation.top.enabled:true}") boolean enabled,
+            @Value("${app.recommendation.top.heap-size:10}") int heapSize,
+            @Value("${app.recommendation.top.maximum-products:10000}") long maximumProducts,
+            @Value("${app.recommendation.top.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+
+        LOG.info("Creates a top recommendations index, enabled: {}, heapSize: {}, maximumProducts: {}, expireAfterWriteSeconds: {}",
+                enabled, heapSize, maximumProducts, expireAfterWriteSeconds);
+
+        this.store = store;
+        this.storedWrites = storedWrites;
+        this.enabled = enabled;
+        this.heapSize = heapSize;
+        this.heaps = Caffeine.newBuilder()
+                .maximumSize(maximumProducts)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.generations = new ProductGenerations(maximumProducts);
+
+        CaffeineCacheMetrics.monitor(registry, heaps, "topRecommendations");
+    }
+
+    public Flux<Recommendation> getTop(int productId, int k) {
+
+        if (!enabled || k > heapSize) {
+            return store.findTopRecommendations(productId, k);
+        }
+
+        TopRecommendations heap = heaps.getIfPresent(productId);
+        if (heap != null) {
+            return Flux.fromIterable(heap.top(k));
+        }
+
+        LOG.debug("Loads the top {} recommendations for productId: {}", heapSize, productId);
+        return Flux.defer(() -> {
+            long generation = generations.get(productId);
+            return store.findTopRecommendations(productId, heapSize)
+                    .collectList()
+                    .flatMapIterable(best -> install(productId, best, generation).top(k));
+        });
+    }
+
+    /**
+     * Applies the event once its write shows up in the store.
+     *
+     * @return completes when the event is applied
+     */
+    public Mono<Void> apply(Event<Integer, Recommendation> event) {
+
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        switch (event.getEventType()) {
+
+            case CREATE:
+                Recommendation recommendation = event.getData();
+                if (recommendation == null) {
+                    return Mono.empty();
+                }
+                // A heap loaded before the insert was committed lacks the recommendation, the invalidation also keeps
+                // loads in flight from caching such a heap
+                return storedWrites.created(recommendation)
+                        .doOnNext(stored -> {
+                            TopRecommendations heap = heaps.getIfPresent(stored.getProductId());
+                            if (heap == null || heap.admits(stored)) {
+                                invalidate(stored.getProductId());
+                            }
+                        })
+                        .then();
+
+            case DELETE:
+                Integer productId = event.getKey();
+                if (productId == null) {
+                    return Mono.empty();
+                }
+                invalidate(productId);
+                return storedWrites.deleted(productId)
+                        .then(Mono.fromRunnable(() -> invalidate(productId)));
+
+            default:
+                LOG.debug("Ignores {} event for productId: {}", event.getEventType(), event.getKey());
+                return Mono.empty();
+        }
+    }
+
+    // Caches the loaded heap unless the product was invalidated since the load started, the heap is returned either way
+    private TopRecommendations install(int productId, List<Recommendation> best, long generation) {
+        TopRecommendations heap = new TopRecommendations(heapSize, best);
+        if (generations.get(productId) != generation) {
+            LOG.debug("Skips caching the top recommendations for productId: {}, they were invalidated while being loaded", productId);
+            return heap;
+        }
+
+        heaps.put(productId, heap);
+
+        // An invalidation between the check above and the put either removed the heap or is seen here
+        if (generations.get(productId) != generation) {
+            heaps.invalidate(productId);
+        }
+        return heap;
+    }
+
+    private void invalidate(int productId) {
+        generations.increment(productId);
+        heaps.invalidate(productId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.microservices.core.recommendation;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.core.recommendation.persistence.BucketRecommendationStore;
+import com.microservices.core.recommendation.persistence.RecommendationBucketEntity;
+import com.microservices.core.recommendation.persistence.RecommendationBucketMigrator;
+import com.microservices.core.recommendation.persistence.RecommendationBucketRepository;
+import com.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.microservices.core.recommendation.persistence.RecommendationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+public class BucketStoreTests {
+
+    private static final int BUCKET_SIZE = 3;
+
+    @Autowired
+    private RecommendationBucketRepository bucketRepository;
+
+    @Autowired
+    private RecommendationRepository repository;
+
+    @Autowired
+    private ReactiveMongoOperations mongoOperations;
+
+    private BucketRecommendationStore store;
+
+    @BeforeEach
+    public void setupDb() {
+        bucketRepository.deleteAll().block();
+        repository.deleteAll().block();
+
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoOperations.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOps = mongoOperations.indexOps(RecommendationBucketEntity.class);
+        resolver.resolveIndexFor(RecommendationBucketEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+
+        store = new BucketRecommendationStore(bucketRepository, mongoOperations, BUCKET_SIZE);
+    }
+
+    @Test
+    public void insertFillsBuckets() {
+        for (int recommendationId = 7; recommendationId >= 1; recommendationId--) {
+            store.insert(new RecommendationEntity(1, recommendationId, "a" + recommendationId, recommendationId % 5, "c")).block();
+        }
+        store.insert(new RecommendationEntity(2, 1, "a", 1, "c")).block();
+
+        List<RecommendationBucketEntity> buckets = bucketRepository.findByProductId(1).collectList().block();
+        assertThat(buckets, hasSize(3));
+        assertEquals(7, buckets.stream().mapToInt(RecommendationBucketEntity::getCount).sum());
+        assertEquals(7, (long)store.countByProductId(1).block());
+        assertEquals(0, (long)store.countByProductId(3).block());
+
+        List<Recommendation> recommendations = store.findRecommendationsByProductId(1).collectList().block();
+        assertEquals(asList(1, 2, 3, 4, 5, 6, 7), recommendationIds(recommendations));
+        assertEquals("a3", recommendations.get(2).getAuthor());
+        assertEquals(3, recommendations.get(2).getRate());
+
+        assertEquals(asList(5, 6), recommendationIds(store.findRecommendationsPage(1, 4, 2).collectList().block()));
+        assertEquals(asList(4, 3), recommendationIds(store.findTopRecommendations(1, 2).collectList().block()));
+        assertThat(store.findRecommendationsByProductIdIn(asList(1, 2)).collectList().block(), hasSize(8));
+    }
+
+    @Test
+    public void duplicateError() {
+        for (int recommendationId = 1; recommendationId <= 4; recommendationId++) {
+            store.insert(new RecommendationEntity(1, recommendationId, "a", 3, "c")).block();
+        }
+
+        // Both in the full bucket and in the bucket that is not full
+        assertThrows(DuplicateKeyException.class, () -> store.insert(new RecommendationEntity(1, 2, "a", 3, "c")).block());
+        assertThrows(DuplicateKeyException.class, () -> store.insert(new RecommendationEntity(1, 4, "a", 3, "c")).block());
+
+        assertEquals(4, (long)store.countByProductId(1).block());
+    }
+
+    @Test
+    public void deleteByProductId() {
+        for (int recommendationId = 1; recommendationId <= 4; recommendationId++) {
+            store.insert(new RecommendationEntity(1, recommendationId, "a", 3, "c")).block();
+        }
+
+        assertEquals(2, (long)store.deleteByProductId(1).block());
+        assertEquals(0, (long)store.countByProductId(1).block());
+    }
+
+    @Test
+    public void migrate() {
+        for (int recommendationId = 1; recommendationId <= 5; recommendationId++) {
+            repository.save(new RecommendationEntity(1, recommendationId, "a", 3, "c")).block();
+        }
+        repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+        store.insert(new RecommendationEntity(1, 2, "a", 3, "c")).block();
+
+        RecommendationBucketMigrator migrator = new RecommendationBucketMigrator(mongoOperations, store, 4);
+        assertEquals(5, (long)migrator.migrate().block());
+        assertEquals(0, (long)migrator.migrate().block());
+
+        assertEquals(asList(1, 2, 3, 4, 5), recommendationIds(store.findRecommendationsByProductId(1).collectList().block()));
+        assertEquals(1, (long)store.countByProductId(2).block());
+    }
+
+    private List<Integer> recommendationIds(List<Recommendation> recommendations) {
+        return recommendations.stream().map(Recommendation::getRecommendationId).collect(toList());
+    }
+}
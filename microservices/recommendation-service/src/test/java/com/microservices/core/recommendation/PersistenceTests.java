@@ -1,5 +1,6 @@
 package com.microservices.core.recommendation;
 
+import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.core.recommendation.persistence.RecommendationEntity;
 import com.microservices.core.recommendation.persistence.RecommendationRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -62,6 +63,14 @@ public class PersistenceTests {
         assertFalse(Boolean.TRUE.equals(repository.existsById(savedEntity.getId()).block()));
     }
 
+    @Test
+    public void deleteByProductId() {
+        repository.save(new RecommendationEntity(savedEntity.getProductId(), 3, "a", 3, "c")).block();
+
+        assertEquals(2, (long)repository.deleteByProductId(savedEntity.getProductId()).block());
+        assertEquals(0, (long)repository.count().block());
+    }
+
     @Test
     public void getByProductId() {
         List<RecommendationEntity> entityList = repository.findByProductId(savedEntity.getProductId()).collectList().block();
@@ -70,6 +79,18 @@ public class PersistenceTests {
         assertEqualsRecommendation(savedEntity, entityList.get(0));
     }
 
+    @Test
+    public void getProjectionByProductId() {
+        List<Recommendation> recommendations = repository.findRecommendationsByProductId(savedEntity.getProductId()).collectList().block();
+
+        assertThat(recommendations, hasSize(1));
+        assertEquals(savedEntity.getProductId(), recommendations.get(0).getProductId());
+        assertEquals(savedEntity.getRecommendationId(), recommendations.get(0).getRecommendationId());
+        assertEquals(savedEntity.getAuthor(), recommendations.get(0).getAuthor());
+        assertEquals(savedEntity.getRating(), recommendations.get(0).getRate());
+        assertEquals(savedEntity.getContent(), recommendations.get(0).getContent());
+    }
+
     @Test
     public void duplicateError() {
         assertThrows(DuplicateKeyException.class, () -> {
@@ -0,0 +1,145 @@
+package com.microservices.core.recommendation;
+
+import com.microservices.api.core.recommendation.Recommendation;
+import com.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.microservices.core.recommendation.persistence.RecommendationRepository;
+import com.microservices.core.recommendation.services.RecommendationMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Compares reading recommendations as entities that are mapped to API objects with reading them through the
+ * aggregations that project them into API objects, with the document layout. Reports the bytes allocated per
+ * request and the number of requests per second. The driver decodes the documents on its own threads, so the
+ * allocated bytes are summed over all live threads rather than taken from the calling thread. Runs against
+ * MongoDB in a container, run it with the benchmark task.
+ *
+ * No results are recorded yet. Record the bytes/request and requests/s of both reads and both paths here, with
+ * the JDK that each run logs.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = NONE, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=INFO",
+		"logging.level.org.mongodb=WARN"})
+public class RecommendationReadBenchmarkTests extends MongoDbTestBase {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RecommendationReadBenchmarkTests.class);
+
+	private static final int NUMBER_OF_PRODUCTS = 10;
+
+	private static final int RECOMMENDATIONS_PER_PRODUCT = 50;
+
+	private static final int WARMUP_REQUESTS = 500;
+
+	private static final int MEASURED_REQUESTS = 2000;
+
+	private static final List<Integer> PRODUCT_IDS = Collections.unmodifiableList(productIds());
+
+	private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Autowired
+	private RecommendationRepository repository;
+
+	@Autowired
+	private RecommendationMapper mapper;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+
+		List<RecommendationEntity> entities = new ArrayList<>();
+		for (int productId : PRODUCT_IDS) {
+			for (int recommendationId = 1; recommendationId <= RECOMMENDATIONS_PER_PRODUCT; recommendationId++) {
+				entities.add(new RecommendationEntity(productId, recommendationId, "Author " + recommendationId, recommendationId % 6, "Content " + recommendationId));
+			}
+		}
+		repository.saveAll(entities).blockLast();
+	}
+
+	@Test
+	public void entitiesVersusProjection() {
+
+		Supplier<List<Recommendation>> entityRead = () -> repository.findByProductIdIn(PRODUCT_IDS, Sort.by("productId", "recommendationId")).map(mapper::entityToApi).collectList().block();
+		Supplier<List<Recommendation>> projectionRead = () -> repository.findRecommendationsByProductIdIn(PRODUCT_IDS).collectList().block();
+
+		assertEquals(NUMBER_OF_PRODUCTS * RECOMMENDATIONS_PER_PRODUCT, entityRead.get().size());
+		assertEquals(NUMBER_OF_PRODUCTS * RECOMMENDATIONS_PER_PRODUCT, projectionRead.get().size());
+
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+	}
+
+	@Test
+	public void oneProductEntitiesVersusProjection() {
+
+		Supplier<List<Recommendation>> entityRead = () -> repository.findByProductId(1).map(mapper::entityToApi).collectList().block();
+		Supplier<List<Recommendation>> projectionRead = () -> repository.findRecommendationsByProductId(1).collectList().block();
+
+		assertEquals(RECOMMENDATIONS_PER_PRODUCT, entityRead.get().size());
+		assertEquals(RECOMMENDATIONS_PER_PRODUCT, projectionRead.get().size());
+
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+	}
+
+	private void measure(String name, Supplier<List<Recommendation>> read) {
+		for (int i = 0; i < WARMUP_REQUESTS; i++) {
+			read.get();
+		}
+
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+
+		int recommendations = 0;
+		for (int i = 0; i < MEASURED_REQUESTS; i++) {
+			recommendations = read.get().size();
+		}
+
+		long elapsedNanos = System.nanoTime() - start;
+		long allocatedBytes = allocatedBytes() - allocatedBefore;
+
+		LOG.info("JDK: {} {}, read {} recommendations per request with {}: {} bytes/request, {} requests/s",
+				System.getProperty("java.vm.name"), System.getProperty("java.version"),
+				recommendations, name,
+				allocatedBytes / MEASURED_REQUESTS, Math.round(MEASURED_REQUESTS * 1_000_000_000.0 / elapsedNanos));
+	}
+
+	// Threads that terminate while measuring are left out, so this is a lower bound
+	private long allocatedBytes() {
+		long total = 0;
+		for (long bytes : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	private static List<Integer> productIds() {
+		List<Integer> productIds = new ArrayList<>();
+		for (int productId = 1; productId <= NUMBER_OF_PRODUCTS; productId++) {
+			productIds.add(productId);
+		}
+		return productIds;
+	}
+}
@@ -4,14 +4,22 @@ import com.microservices.api.core.recommendation.Recommendation;
 import com.microservices.api.event.Event;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.core.recommendation.persistence.RecommendationRepository;
+import com.microservices.core.recommendation.persistence.RecommendationStatisticsEntity;
+import com.microservices.core.recommendation.persistence.RecommendationStatisticsStore;
+import com.microservices.core.recommendation.services.SimilarProductsEngine;
+import com.microservices.core.recommendation.services.TopRecommendationsIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import static com.microservices.api.event.Event.Type.CREATE;
@@ -23,7 +31,10 @@ import static org.springframework.http.HttpStatus.*;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
-@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {"spring.data.mongodb.port: 0"})
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.data.mongodb.port: 0",
+		"app.recommendation.stored-writes.attempts: 40",
+		"app.recommendation.stored-writes.interval-ms: 50"})
 public class RecommendationServiceApplicationTests {
 
 	@Autowired
@@ -32,13 +43,26 @@ public class RecommendationServiceApplicationTests {
 	@Autowired
 	private RecommendationRepository repository;
 
+	@Autowired
+	private ReactiveMongoOperations mongoOperations;
+
+	@Autowired
+	private RecommendationStatisticsStore statisticsStore;
+
 	@Autowired
 	@Qualifier("messageProcessor")
 	private Consumer<Event<Integer, Recommendation>> messageProcessor = null;
 
+	@Autowired
+	private TopRecommendationsIndex topRecommendationsIndex;
+
+	@Autowired
+	private SimilarProductsEngine similarProductsEngine;
+
 	@BeforeEach
 	public void setupDb() {
 		repository.deleteAll().block();
+		mongoOperations.remove(new Query(), RecommendationStatisticsEntity.class).block();
 	}
 
 	@Test
@@ -58,6 +82,273 @@ public class RecommendationServiceApplicationTests {
 				.jsonPath("$[2].recommendationId").isEqualTo(3);
 	}
 
+	@Test
+	public void getRecommendationsByProductIds() {
+
+		sendCreateRecommendationEvent(2, 1);
+		sendCreateRecommendationEvent(1, 1);
+		sendCreateRecommendationEvent(2, 2);
+
+		getAndVerifyRecommendationsByProductId("?productIds=1,2", OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[1].recommendationId").isEqualTo(1)
+				.jsonPath("$[2].productId").isEqualTo(2)
+				.jsonPath("$[2].recommendationId").isEqualTo(2);
+	}
+
+	@Test
+	public void getRecommendationsPage() {
+
+		int productId = 1;
+
+		for (int id = 1; id <= 5; id++) {
+			sendCreateRecommendationEvent(productId, id);
+		}
+		sendCreateRecommendationEvent(2, 1);
+
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&limit=2", OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].recommendationId").isEqualTo(1)
+				.jsonPath("$[1].recommendationId").isEqualTo(2);
+
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&after=4&limit=2", OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(5);
+
+		getAndVerifyRecommendationsByProductId("/count?productId=" + productId, OK)
+				.jsonPath("$").isEqualTo(5);
+	}
+
+	@Test
+	public void getRecommendationsByProductIdsAndPageIsRejected() {
+
+		getAndVerifyRecommendationsByProductId("?productIds=1,2&productId=1&limit=2", BAD_REQUEST);
+	}
+
+	@Test
+	public void getRecommendationsPageInvalidLimit() {
+
+		getAndVerifyRecommendationsByProductId("?productId=1&limit=101", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/recommendation")
+				.jsonPath("$.message").isEqualTo("Invalid limit: 101, expected 1 to 100");
+	}
+
+	@Test
+	public void getTopRecommendations() {
+
+		int productId = 3;
+
+		sendCreateRecommendationEvent(productId, 1);
+		sendCreateRecommendationEvent(productId, 4);
+		sendCreateRecommendationEvent(productId, 2);
+
+		getAndVerifyTopRecommendations(productId, 2, OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].recommendationId").isEqualTo(4)
+				.jsonPath("$[1].recommendationId").isEqualTo(2);
+
+		sendCreateRecommendationEvent(productId, 3);
+		getAndVerifyTopRecommendations(productId, 2, OK)
+				.jsonPath("$[0].recommendationId").isEqualTo(4)
+				.jsonPath("$[1].recommendationId").isEqualTo(3);
+
+		getAndVerifyTopRecommendations(productId, 20, OK)
+				.jsonPath("$.length()").isEqualTo(4)
+				.jsonPath("$[3].recommendationId").isEqualTo(1);
+
+		sendDeleteRecommendationEvent(productId);
+		getAndVerifyTopRecommendations(productId, 2, OK)
+				.jsonPath("$.length()").isEqualTo(0);
+	}
+
+	@Test
+	public void rejectedDuplicateDoesNotEnterTopRecommendations() {
+
+		int productId = 4;
+
+		// The heap keeps the best 10, recommendationId 1 with rate 1 is not in it
+		for (int recommendationId = 1; recommendationId <= 11; recommendationId++) {
+			sendCreateRecommendationEvent(productId, recommendationId);
+		}
+		getAndVerifyTopRecommendations(productId, 1, OK)
+				.jsonPath("$[0].recommendationId").isEqualTo(11);
+
+		Event<Integer, Recommendation> duplicate = new Event(CREATE, productId, new Recommendation(productId, 1, "Author 1", 20, "Content 1", "SA"));
+		assertThrows(InvalidInputException.class, () -> messageProcessor.accept(duplicate));
+		applyToIndexes(duplicate);
+
+		getAndVerifyTopRecommendations(productId, 1, OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(11);
+	}
+
+	@Test
+	public void topRecommendationsAreInvalidatedWhenTheWriteShowsUp() {
+
+		int productId = 5;
+
+		sendCreateRecommendationEvent(productId, 1);
+		sendCreateRecommendationEvent(productId, 2);
+
+		// The indexUpdater sees the event before the messageProcessor has written it, a heap loaded meanwhile lacks it
+		Event<Integer, Recommendation> event = createRecommendationEvent(productId, 3);
+		CompletableFuture<Void> applied = topRecommendationsIndex.apply(event).toFuture();
+
+		getAndVerifyTopRecommendations(productId, 1, OK)
+				.jsonPath("$[0].recommendationId").isEqualTo(2);
+
+		messageProcessor.accept(event);
+		applied.join();
+
+		getAndVerifyTopRecommendations(productId, 1, OK)
+				.jsonPath("$[0].recommendationId").isEqualTo(3);
+	}
+
+	@Test
+	public void getTopRecommendationsInvalidK() {
+
+		getAndVerifyTopRecommendations(1, 101, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/recommendation/top")
+				.jsonPath("$.message").isEqualTo("Invalid k: 101, expected 1 to 100");
+	}
+
+	@Test
+	public void getSimilarProducts() {
+
+		// Authors are named after the recommendationId, products sharing a recommendationId co-occur
+		sendCreateRecommendationEvent(11, 1);
+		sendCreateRecommendationEvent(11, 2);
+		sendCreateRecommendationEvent(12, 1);
+		sendCreateRecommendationEvent(12, 2);
+		sendCreateRecommendationEvent(13, 2);
+
+		getAndVerifySimilarProducts(11, 5, OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].productId").isEqualTo(12)
+				.jsonPath("$[0].coOccurrences").isEqualTo(2)
+				.jsonPath("$[1].productId").isEqualTo(13)
+				.jsonPath("$[1].coOccurrences").isEqualTo(1);
+
+		getAndVerifySimilarProducts(11, 1, OK)
+				.jsonPath("$.length()").isEqualTo(1);
+
+		sendDeleteRecommendationEvent(12);
+		getAndVerifySimilarProducts(11, 5, OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].productId").isEqualTo(13);
+
+		sendDeleteRecommendationEvent(11);
+		sendDeleteRecommendationEvent(13);
+		getAndVerifySimilarProducts(13, 5, OK)
+				.jsonPath("$.length()").isEqualTo(0);
+	}
+
+	@Test
+	public void rejectedDuplicateDoesNotAddSimilarProducts() {
+
+		sendCreateRecommendationEvent(21, 1);
+		sendCreateRecommendationEvent(22, 1);
+		sendCreateRecommendationEvent(23, 2);
+
+		// The insert is rejected, the stored recommendation 23/2 is from Author 2
+		Event<Integer, Recommendation> duplicate = new Event(CREATE, 23, new Recommendation(23, 2, "Author 1", 2, "Content 2", "SA"));
+		assertThrows(InvalidInputException.class, () -> messageProcessor.accept(duplicate));
+		applyToIndexes(duplicate);
+
+		getAndVerifySimilarProducts(21, 5, OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].productId").isEqualTo(22);
+
+		sendDeleteRecommendationEvent(21);
+		sendDeleteRecommendationEvent(22);
+		sendDeleteRecommendationEvent(23);
+	}
+
+	@Test
+	public void getSimilarProductsInvalidK() {
+
+		getAndVerifySimilarProducts(1, 21, UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/recommendation/similar")
+				.jsonPath("$.message").isEqualTo("Invalid k: 21, expected 1 to 20");
+	}
+
+	@Test
+	public void getRecommendationStatistics() {
+
+		int productId = 1;
+
+		sendCreateRecommendationEvent(productId, 1);
+		sendCreateRecommendationEvent(productId, 3);
+		sendCreateRecommendationEvent(productId, 5);
+		sendCreateRecommendationEvent(2, 1);
+
+		getAndVerifyRecommendationStatistics(productId, OK)
+				.jsonPath("$.productId").isEqualTo(productId)
+				.jsonPath("$.count").isEqualTo(3)
+				.jsonPath("$.averageRate").isEqualTo(3.0)
+				.jsonPath("$.histogram.1").isEqualTo(1)
+				.jsonPath("$.histogram.3").isEqualTo(1)
+				.jsonPath("$.histogram.5").isEqualTo(1);
+
+		sendDeleteRecommendationEvent(productId);
+
+		getAndVerifyRecommendationStatistics(productId, OK)
+				.jsonPath("$.count").isEqualTo(0)
+				.jsonPath("$.averageRate").isEqualTo(0.0);
+
+		getAndVerifyRecommendationStatistics(2, OK)
+				.jsonPath("$.count").isEqualTo(1);
+	}
+
+	@Test
+	public void rebuildRecommendationStatistics() {
+
+		sendCreateRecommendationEvent(1, 2);
+		sendCreateRecommendationEvent(1, 4);
+		sendCreateRecommendationEvent(1, 5);
+		sendCreateRecommendationEvent(2, 3);
+
+		// Statistics that missed the recommendations, e.g. created before they were maintained
+		mongoOperations.remove(new Query(), RecommendationStatisticsEntity.class).block();
+		getAndVerifyRecommendationStatistics(1, OK).jsonPath("$.count").isEqualTo(0);
+
+		statisticsStore.rebuildAll().block();
+
+		getAndVerifyRecommendationStatistics(1, OK)
+				.jsonPath("$.count").isEqualTo(3)
+				.jsonPath("$.averageRate").isEqualTo(11 / 3.0)
+				.jsonPath("$.histogram.2").isEqualTo(1)
+				.jsonPath("$.histogram.4").isEqualTo(1)
+				.jsonPath("$.histogram.5").isEqualTo(1);
+
+		getAndVerifyRecommendationStatistics(2, OK)
+				.jsonPath("$.count").isEqualTo(1)
+				.jsonPath("$.averageRate").isEqualTo(3.0);
+
+		sendDeleteRecommendationEvent(1);
+		statisticsStore.rebuild(1).block();
+
+		getAndVerifyRecommendationStatistics(1, OK).jsonPath("$.count").isEqualTo(0);
+	}
+
+	@Test
+	public void duplicateEventRebuildsRecommendationStatistics() {
+
+		sendCreateRecommendationEvent(1, 1);
+		sendCreateRecommendationEvent(1, 3);
+
+		// As if the statistics update of the first delivery had failed
+		mongoOperations.remove(new Query(), RecommendationStatisticsEntity.class).block();
+
+		assertThrows(InvalidInputException.class, () -> sendCreateRecommendationEvent(1, 3));
+
+		getAndVerifyRecommendationStatistics(1, OK)
+				.jsonPath("$.count").isEqualTo(2)
+				.jsonPath("$.averageRate").isEqualTo(2.0);
+	}
+
 	@Test
 	public void duplicateError() {
 
@@ -139,14 +430,55 @@ public class RecommendationServiceApplicationTests {
 				.expectBody();
 	}
 
-	private void sendCreateRecommendationEvent(int productId, int recommendationId) {
+	private WebTestClient.BodyContentSpec getAndVerifyTopRecommendations(int productId, int k, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/recommendation/top?productId=" + productId + "&k=" + k)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifySimilarProducts(int productId, int k, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/recommendation/similar?productId=" + productId + "&k=" + k)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyRecommendationStatistics(int productId, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/recommendation/statistics?productId=" + productId)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private Event<Integer, Recommendation> createRecommendationEvent(int productId, int recommendationId) {
 		Recommendation recommendation = new Recommendation(productId, recommendationId, "Author " + recommendationId, recommendationId, "Content " + recommendationId, "SA");
-		Event<Integer, Recommendation> event = new Event(CREATE, productId, recommendation);
+		return new Event(CREATE, productId, recommendation);
+	}
+
+	private void sendCreateRecommendationEvent(int productId, int recommendationId) {
+		Event<Integer, Recommendation> event = createRecommendationEvent(productId, recommendationId);
 		messageProcessor.accept(event);
+		applyToIndexes(event);
 	}
 
 	private void sendDeleteRecommendationEvent(int productId) {
 		Event<Integer, Recommendation> event = new Event(DELETE, productId, null);
 		messageProcessor.accept(event);
+		applyToIndexes(event);
+	}
+
+	// Applies the event like the indexUpdater, but waits until it is applied
+	private void applyToIndexes(Event<Integer, Recommendation> event) {
+		Mono.when(topRecommendationsIndex.apply(event), similarProductsEngine.apply(event)).block();
 	}
 }
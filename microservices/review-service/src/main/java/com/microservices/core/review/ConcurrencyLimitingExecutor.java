@@ -0,0 +1,59 @@
+package com.microservices.core.review;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a delegate executor but lets at most {@code maxConcurrency} of them execute at the same time,
+ * the other tasks wait for a permit on their own thread. Used with virtual threads, where the executor itself
+ * has no bound, to keep the number of tasks competing for a JDBC connection at the size of the connection pool.
+ * When {@code queueCapacity} tasks are already waiting, new tasks are rejected with a RejectedExecutionException.
+ */
+class ConcurrencyLimitingExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final Semaphore permits;
+
+    private final int queueCapacity;
+
+    private final int maxOutstanding;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final Runnable onRejected;
+
+    ConcurrencyLimitingExecutor(Executor delegate, int maxConcurrency, int queueCapacity, Runnable onRejected) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.queueCapacity = queueCapacity;
+        this.maxOutstanding = maxConcurrency + queueCapacity;
+        this.onRejected = onRejected;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (outstanding.incrementAndGet() > maxOutstanding) {
+            outstanding.decrementAndGet();
+            onRejected.run();
+            throw new RejectedExecutionException("Too many waiting tasks, queue capacity is: " + queueCapacity);
+        }
+
+        try {
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                    outstanding.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            outstanding.decrementAndGet();
+            throw e;
+        }
+    }
+}
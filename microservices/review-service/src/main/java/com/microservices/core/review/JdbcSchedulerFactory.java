@@ -0,0 +1,95 @@
+package com.microservices.core.review;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the schedulers that blocking JDBC calls run on, one per connection pool, i.e. the jdbcScheduler bean
+ * and one per additional review shard.
+ *
+ * At most queueCapacity tasks wait for one of the connectionPoolSize threads (or permits with virtual threads),
+ * further tasks are rejected at once with a RejectedExecutionException. The time tasks wait and execute is
+ * recorded by the executor.idle and executor timers, tagged with the name of the scheduler.
+ */
+@Component
+public class JdbcSchedulerFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcSchedulerFactory.class);
+
+    private final MeterRegistry registry;
+
+    private final Integer connectionPoolSize;
+
+    private final String jdbcSchedulerMode;
+
+    private final Integer queueCapacity;
+
+    @Autowired
+    public JdbcSchedulerFactory(
+            MeterRegistry registry,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") Integer connectionPoolSize,
+            @Value("${app.review.jdbc-scheduler.mode:fixed}") String jdbcSchedulerMode,
+            @Value("${app.review.jdbc-scheduler.queue-capacity:100}") Integer queueCapacity) {
+
+        this.registry = registry;
+        this.connectionPoolSize = connectionPoolSize;
+        this.jdbcSchedulerMode = jdbcSchedulerMode;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Scheduler create(String name) {
+        Counter rejected = Counter.builder("executor.rejected")
+                .tag("name", name)
+                .description("The number of tasks rejected since the " + name + " queue was full")
+                .register(registry);
+
+        if ("virtual".equals(jdbcSchedulerMode)) {
+            ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualThreadExecutor != null) {
+                LOG.info("Creates a {} on virtual threads with max concurrency = {}, queueCapacity = {}", name, connectionPoolSize, queueCapacity);
+                ConcurrencyLimitingExecutor executor = new ConcurrencyLimitingExecutor(virtualThreadExecutor, connectionPoolSize, queueCapacity, rejected::increment);
+                return Schedulers.fromExecutor(ExecutorServiceMetrics.monitor(registry, executor, name));
+            }
+            LOG.warn("Virtual threads are not supported by this JVM, falls back to a fixed thread pool");
+        }
+
+        LOG.info("Creates a {} with connectionPoolSize = {}, queueCapacity = {}", name, connectionPoolSize, queueCapacity);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                connectionPoolSize, connectionPoolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Executors.defaultThreadFactory(),
+                (task, pool) -> {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Too many waiting tasks, queue capacity is: " + queueCapacity);
+                });
+        return Schedulers.fromExecutorService(ExecutorServiceMetrics.monitor(registry, executor, name));
+    }
+
+    // Looked up by reflection since the code is compiled for Java 8, returns null if the JVM has no virtual threads
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            LOG.debug("Failed to create a virtual thread executor: " + e);
+            return null;
+        }
+    }
+}
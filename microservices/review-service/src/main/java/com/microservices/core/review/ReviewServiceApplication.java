@@ -2,17 +2,12 @@ package com.microservices.core.review;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
-
-import java.util.concurrent.Executors;
 
 @SpringBootApplication
 @ComponentScan("com")
@@ -20,21 +15,14 @@ public class ReviewServiceApplication {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceApplication.class);
 
-	private final Integer connectionPoolSize;
-
-	@Autowired
-	public ReviewServiceApplication(
-			@Value("${spring.datasource.maximum-pool-size:10}")
-			Integer connectionPoolSize
-	) {
-		this.connectionPoolSize = connectionPoolSize;
-	}
-
+	/**
+	 * The scheduler of the connection pool of spring.datasource, see JdbcSchedulerFactory.
+	 */
 	@Bean
-	public Scheduler jdbcScheduler() {
-		LOG.info("Creates a jdbcScheduler with connectionPoolSize = " + connectionPoolSize);
-		return Schedulers.fromExecutor(Executors.newFixedThreadPool(connectionPoolSize));
+	public Scheduler jdbcScheduler(JdbcSchedulerFactory jdbcSchedulerFactory) {
+		return jdbcSchedulerFactory.create("jdbcScheduler");
 	}
+
 	public static void main(String[] args) {
 		ConfigurableApplicationContext ctx = SpringApplication.run(ReviewServiceApplication.class, args);
 
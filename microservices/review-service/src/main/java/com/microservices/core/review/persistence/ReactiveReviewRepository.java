@@ -0,0 +1,28 @@
+package com.microservices.core.review.persistence;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveReviewRepository extends ReactiveCrudRepository<ReactiveReviewEntity, Integer> {
+
+    Flux<ReactiveReviewEntity> findByProductId(int productId);
+
+    Flux<ReactiveReviewEntity> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+
+    @Query("SELECT * FROM reviews WHERE product_id = :productId AND review_id > :after ORDER BY review_id LIMIT :limit")
+    Flux<ReactiveReviewEntity> findPage(@Param("productId") int productId, @Param("after") int after, @Param("limit") int limit);
+
+    @Query("SELECT COUNT(*) FROM reviews WHERE product_id = :productId")
+    Mono<Long> countByProductId(@Param("productId") int productId);
+
+    @Modifying
+    @Query("DELETE FROM reviews WHERE product_id = :productId")
+    Mono<Integer> deleteByProductId(@Param("productId") int productId);
+}
@@ -0,0 +1,77 @@
+package com.microservices.core.review.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the data source of spring.datasource with one that sends reads to the replicas in app.review.replicas.urls,
+ * see ReplicaRoutingDataSource, enabled when replica URLs are configured. The primary is configured as before by
+ * spring.datasource, the replicas use the same credentials and pool size with a shorter connection timeout, so that
+ * a replica that is down is detected quickly.
+ */
+@Configuration
+@ConditionalOnExpression("'${app.review.replicas.urls:}' != '' and '${app.review.persistence:jpa}' == 'jpa'")
+public class ReplicaRoutingConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRoutingConfig.class);
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("review-primary");
+        return dataSource;
+    }
+
+    @Bean
+    public RoundRobinReplicaDataSource replicaDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry registry,
+            @Value("${app.review.replicas.urls}") String[] urls,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${app.review.replicas.connection-timeout-ms:1000}") long connectionTimeoutMs,
+            @Value("${app.review.replicas.retry-after-ms:5000}") long retryAfterMs) {
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+
+            LOG.info("Reads reviews from the replica on {}", url.trim());
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            replica.setPoolName("review-replica-" + replicas.size());
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(registry);
+            replicas.add(replica);
+        }
+
+        return new RoundRobinReplicaDataSource(replicas, primaryDataSource, retryAfterMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, RoundRobinReplicaDataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+}
@@ -0,0 +1,67 @@
+package com.microservices.core.review.persistence;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Routes connections to the primary or to the replicas. Read-write transactions always use the primary,
+ * reads use the route given to {@link #read(Route, Supplier)} and otherwise the replicas in read-only
+ * transactions, i.e. @Transactional(readOnly = true), and the primary outside of transactions.
+ *
+ * The transaction manager takes a connection before the transaction is marked read-only, so this data source
+ * must be wrapped in a LazyConnectionDataSourceProxy that only takes the connection on the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Route> READ_ROUTE = new ThreadLocal<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replicas) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(Route.PRIMARY, primary);
+        targetDataSources.put(Route.REPLICA, replicas);
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Runs a read on the calling thread with connections taken from the given route, unless it joins a
+     * read-write transaction.
+     */
+    public static <T> T read(Route route, Supplier<T> action) {
+        Route previous = READ_ROUTE.get();
+        READ_ROUTE.set(route);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                READ_ROUTE.remove();
+            } else {
+                READ_ROUTE.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnlyTransaction = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnlyTransaction) {
+            return Route.PRIMARY;
+        }
+
+        Route route = READ_ROUTE.get();
+        if (route != null) {
+            return route;
+        }
+        return readOnlyTransaction ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,68 @@
+package com.microservices.core.review.persistence;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.core.review.persistence.ReplicaRoutingDataSource.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the products written by this instance for {@code primary-after-write-ms}, reads of those products go to
+ * the primary so that they see the write even if the replicas lag behind. Writes processed by other instances are not
+ * known here, so the window only gives read-your-writes for reads served by the same instance.
+ * Without replicas, all reads go to the primary and nothing is remembered.
+ */
+@Component
+public class ReplicaStalenessGuard {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaStalenessGuard.class);
+
+    private final boolean replicasEnabled;
+
+    private final Cache<Integer, Boolean> recentWrites;
+
+    @Autowired
+    public ReplicaStalenessGuard(
+            @Value("${app.review.replicas.urls:}") String[] urls,
+            @Value("${app.review.replicas.primary-after-write-ms:1000}") long primaryAfterWriteMs,
+            @Value("${app.review.replicas.maximum-recent-writes:100000}") long maximumRecentWrites) {
+
+        this.replicasEnabled = urls.length > 0;
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(primaryAfterWriteMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumRecentWrites)
+                .build();
+
+        if (replicasEnabled) {
+            LOG.info("Reads products from the primary for {} ms after a write", primaryAfterWriteMs);
+        }
+    }
+
+    public void recordWrite(int productId) {
+        if (replicasEnabled) {
+            recentWrites.put(productId, Boolean.TRUE);
+        }
+    }
+
+    public Route readRoute(int productId) {
+        if (!replicasEnabled || recentWrites.getIfPresent(productId) != null) {
+            return Route.PRIMARY;
+        }
+        return Route.REPLICA;
+    }
+
+    public Route readRoute(Collection<Integer> productIds) {
+        for (Integer productId : productIds) {
+            if (readRoute(productId) == Route.PRIMARY) {
+                return Route.PRIMARY;
+            }
+        }
+        return Route.REPLICA;
+    }
+}
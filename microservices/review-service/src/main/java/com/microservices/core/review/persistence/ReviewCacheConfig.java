@@ -0,0 +1,112 @@
+package com.microservices.core.review.persistence;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level and query cache for reviews, enabled with app.review.cache.enabled=true.
+ *
+ * The regions are bounded Caffeine caches in the JVM, created here before Hibernate starts:
+ * review entities by id in ENTITY_REGION, the ids returned by ReviewRepository.findByProductId in
+ * QUERY_REGION, and the last update time of the reviews table in the timestamps region. Hibernate
+ * invalidates the entries when reviews are saved or deleted through JPA, including the bulk delete
+ * by productId. Hits, misses, puts and evictions of each region are published as cache metrics.
+ *
+ * The regions are local to one instance and only invalidated by the writes of that instance, so the cache is for
+ * a single review instance. It is rejected at startup when the reviews are partitioned over several instances,
+ * since a review created or deleted by one instance would not invalidate the regions of the others.
+ */
+@Configuration
+@ConditionalOnExpression("${app.review.cache.enabled:false} and '${app.review.persistence:jpa}' == 'jpa'")
+public class ReviewCacheConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewCacheConfig.class);
+
+    public static final String ENTITY_REGION = "review-entities";
+    public static final String QUERY_REGION = "review-queries";
+
+    private static final String DEFAULT_QUERY_REGION = "default-query-results-region";
+    private static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    private final long maximumEntities;
+
+    private final long maximumQueries;
+
+    private final long expireAfterWriteSeconds;
+
+    public ReviewCacheConfig(
+            @Value("${app.review.cache.maximum-entities:10000}") long maximumEntities,
+            @Value("${app.review.cache.maximum-queries:1000}") long maximumQueries,
+            @Value("${app.review.cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds,
+            @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.partitioned:false}") boolean partitioned,
+            @Value("${spring.cloud.stream.bindings.messageProcessor-in-0.consumer.instanceCount:1}") int instanceCount) {
+
+        if (partitioned || instanceCount > 1) {
+            throw new IllegalArgumentException("The review cache is local to one instance and can't be used with "
+                    + instanceCount + " partitioned instances, disable app.review.cache.enabled");
+        }
+
+        this.maximumEntities = maximumEntities;
+        this.maximumQueries = maximumQueries;
+        this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager reviewCacheManager() {
+        LOG.info("Creates the review cache, maximumEntities: {}, maximumQueries: {}, expireAfterWriteSeconds: {}",
+                maximumEntities, maximumQueries, expireAfterWriteSeconds);
+
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        OptionalLong expireAfterWrite = OptionalLong.of(TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds));
+        cacheManager.createCache(ENTITY_REGION, regionConfiguration(OptionalLong.of(maximumEntities), expireAfterWrite));
+        cacheManager.createCache(QUERY_REGION, regionConfiguration(OptionalLong.of(maximumQueries), expireAfterWrite));
+        cacheManager.createCache(DEFAULT_QUERY_REGION, regionConfiguration(OptionalLong.of(maximumQueries), expireAfterWrite));
+
+        // Holds one entry per table, evicting them would make cached queries return stale results
+        cacheManager.createCache(TIMESTAMPS_REGION, regionConfiguration(OptionalLong.empty(), OptionalLong.empty()));
+
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer reviewCacheHibernateProperties(CacheManager reviewCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", "true");
+            properties.put("hibernate.cache.use_query_cache", "true");
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", reviewCacheManager);
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        };
+    }
+
+    @Bean
+    public MeterBinder reviewCacheMetrics(CacheManager reviewCacheManager) {
+        return registry -> reviewCacheManager.getCacheNames()
+                .forEach(name -> JCacheMetrics.monitor(registry, reviewCacheManager.getCache(name)));
+    }
+
+    private CaffeineConfiguration<Object, Object> regionConfiguration(OptionalLong maximumSize, OptionalLong expireAfterWriteNanos) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize);
+        configuration.setExpireAfterWrite(expireAfterWriteNanos);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
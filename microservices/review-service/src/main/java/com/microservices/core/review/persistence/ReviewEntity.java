@@ -1,13 +1,35 @@
 package com.microservices.core.review.persistence;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 
+import static javax.persistence.GenerationType.SEQUENCE;
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+
+// Only cached when the second-level cache is enabled, see ReviewCacheConfig
 @Entity
+@Cacheable
+@Cache(usage = READ_WRITE, region = ReviewCacheConfig.ENTITY_REGION)
 @Table(name = "reviews", indexes = { @Index(name = "reviews_unique_idx", unique = true, columnList = "productId,reviewId") })
 public class ReviewEntity {
 
+    /**
+     * Ids are allocated in blocks of 50 from the hibernate_sequence table (MySQL has no sequences),
+     * so inserts don't need a round trip per id and can be sent as JDBC batches.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = SEQUENCE, generator = "review_id_generator")
+    @GenericGenerator(
+            name = "review_id_generator",
+            strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "hibernate_sequence"),
+                    @Parameter(name = "increment_size", value = "50"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     private int id;
 
     @Version
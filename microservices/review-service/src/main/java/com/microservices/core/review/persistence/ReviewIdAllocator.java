@@ -0,0 +1,75 @@
+package com.microservices.core.review.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Allocates review ids for the R2DBC persistence mode from the hibernate_sequence table, in blocks of
+ * the same size and with the same pooled-lo semantics as the id generator of {@link ReviewEntity},
+ * so reviews written with JPA and with R2DBC never get the same id.
+ *
+ * A block is claimed with a compare-and-set update, so several instances can allocate concurrently.
+ */
+@Component
+@ConditionalOnProperty(name = "app.review.persistence", havingValue = "r2dbc")
+public class ReviewIdAllocator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewIdAllocator.class);
+
+    static final int BLOCK_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+
+    private final Object lock = new Object();
+
+    private long nextId = 0;
+
+    private long endOfBlock = 0;
+
+    @Autowired
+    public ReviewIdAllocator(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            synchronized (lock) {
+                if (nextId < endOfBlock) {
+                    return Mono.just((int) nextId++);
+                }
+            }
+            return allocateBlock().map(this::takeFromBlock);
+        });
+    }
+
+    // If another subscriber already replaced the exhausted block, the newly allocated block is skipped
+    private int takeFromBlock(long startOfBlock) {
+        synchronized (lock) {
+            if (nextId >= endOfBlock) {
+                nextId = startOfBlock;
+                endOfBlock = startOfBlock + BLOCK_SIZE;
+            }
+            return (int) nextId++;
+        }
+    }
+
+    private Mono<Long> allocateBlock() {
+        return databaseClient.sql("SELECT next_val FROM hibernate_sequence")
+                .map(row -> row.get("next_val", Long.class))
+                .one()
+                .flatMap(startOfBlock -> databaseClient.sql("UPDATE hibernate_sequence SET next_val = :next WHERE next_val = :current")
+                        .bind("next", startOfBlock + BLOCK_SIZE)
+                        .bind("current", startOfBlock)
+                        .fetch()
+                        .rowsUpdated()
+                        .filter(rowsUpdated -> rowsUpdated == 1)
+                        .map(rowsUpdated -> startOfBlock))
+                .doOnNext(startOfBlock -> LOG.debug("Allocated review ids {} to {}", startOfBlock, startOfBlock + BLOCK_SIZE - 1))
+                .switchIfEmpty(Mono.defer(this::allocateBlock));
+    }
+}
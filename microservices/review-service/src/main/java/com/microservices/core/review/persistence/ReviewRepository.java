@@ -1,12 +1,50 @@
 package com.microservices.core.review.persistence;
 
+import com.microservices.api.core.review.Review;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
 
+    // The result is cached in the query cache when the second-level cache is enabled, see ReviewCacheConfig
     @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = ReviewCacheConfig.QUERY_REGION)})
     List<ReviewEntity> findByProductId(int productId);
+
+    @Transactional(readOnly = true)
+    List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+
+    /**
+     * Read-only projections that create the API objects directly from the selected columns, i.e. without
+     * entities in the persistence context. The serviceAddress is left empty for the caller to set.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.microservices.api.core.review.Review(r.productId, r.reviewId, r.author, r.subject, r.content, r.version, '') " +
+            "FROM ReviewEntity r WHERE r.productId IN :productIds ORDER BY r.productId, r.reviewId")
+    List<Review> findReviewsByProductIdIn(@Param("productIds") Collection<Integer> productIds);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.microservices.api.core.review.Review(r.productId, r.reviewId, r.author, r.subject, r.content, r.version, '') " +
+            "FROM ReviewEntity r WHERE r.productId = :productId AND r.reviewId > :after ORDER BY r.reviewId")
+    List<Review> findReviewsPage(@Param("productId") int productId, @Param("after") int after, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    long countByProductId(int productId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReviewEntity r WHERE r.productId = :productId")
+    int deleteByProductId(@Param("productId") int productId);
 }
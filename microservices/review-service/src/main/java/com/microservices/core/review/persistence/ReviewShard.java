@@ -0,0 +1,41 @@
+package com.microservices.core.review.persistence;
+
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * A database holding the reviews of the products routed to it by ReviewShards, with its own connection pool,
+ * repository and scheduler for the blocking calls.
+ */
+public class ReviewShard {
+
+    private final int index;
+
+    private final ReviewRepository repository;
+
+    private final Scheduler scheduler;
+
+    private final Runnable onClose;
+
+    public ReviewShard(int index, ReviewRepository repository, Scheduler scheduler, Runnable onClose) {
+        this.index = index;
+        this.repository = repository;
+        this.scheduler = scheduler;
+        this.onClose = onClose;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public ReviewRepository getRepository() {
+        return repository;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    void close() {
+        onClose.run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.microservices.core.review.persistence;
+
+import com.microservices.core.review.JdbcSchedulerFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.support.PersistenceExceptionTranslationInterceptor;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import reactor.core.scheduler.Scheduler;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shard 0 is the database of spring.datasource with the repository, streaming reader and jdbcScheduler beans,
+ * every URL in app.review.sharding.urls adds a shard with the same credentials, Hibernate settings and pool size.
+ * With no URLs, all reviews are in the database of spring.datasource as before.
+ *
+ * An additional shard gets its own Hikari pool, entity manager factory, i.e. its own schema update and id sequence,
+ * transaction manager, repository and scheduler. Its repository is created without Spring Data's factory bean,
+ * so the exception translation and transactions that the factory bean adds are added here. The second-level cache,
+ * if enabled, is only used by shard 0.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.review.persistence", havingValue = "jpa", matchIfMissing = true)
+public class ReviewShardingConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewShardingConfig.class);
+
+    @Bean
+    public ReviewShards reviewShards(
+            ReviewRepository repository,
+            Scheduler jdbcScheduler,
+            JdbcSchedulerFactory jdbcSchedulerFactory,
+            DataSourceProperties dataSourceProperties,
+            EntityManagerFactoryBuilder entityManagerFactoryBuilder,
+            JpaProperties jpaProperties,
+            HibernateProperties hibernateProperties,
+            MeterRegistry registry,
+            @Value("${app.review.sharding.urls:}") String[] urls,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+
+        List<ReviewShard> shards = new ArrayList<>();
+        shards.add(new ReviewShard(0, repository, jdbcScheduler, () -> { }));
+
+        for (String url : urls) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+
+            int index = shards.size();
+            String name = "review-shard-" + index;
+            LOG.info("Creates review shard {} on {}", index, url.trim());
+
+            HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            dataSource.setPoolName(name);
+            dataSource.setMaximumPoolSize(maximumPoolSize);
+            dataSource.setMetricRegistry(registry);
+
+            LocalContainerEntityManagerFactoryBean factoryBean = entityManagerFactoryBuilder
+                    .dataSource(dataSource)
+                    .packages(ReviewEntity.class)
+                    .persistenceUnit(name)
+                    .properties(hibernateProperties.determineHibernateProperties(jpaProperties.getProperties(), new HibernateSettings()))
+                    .build();
+            factoryBean.afterPropertiesSet();
+            EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+
+            JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+            JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+            repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                proxyFactory.addAdvice(new PersistenceExceptionTranslationInterceptor(factoryBean));
+                proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+            });
+
+            Scheduler scheduler = jdbcSchedulerFactory.create("jdbcScheduler-" + name);
+
+            shards.add(new ReviewShard(
+                    index,
+                    repositoryFactory.getRepository(ReviewRepository.class),
+                    scheduler,
+                    () -> {
+                        scheduler.dispose();
+                        entityManagerFactory.close();
+                        dataSource.close();
+                    }));
+        }
+
+        LOG.info("Stores reviews on {} shards", shards.size());
+        return new ReviewShards(shards);
+    }
+}
@@ -0,0 +1,64 @@
+package com.microservices.core.review.persistence;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Routes the reviews of a product to one of the shards by a hash of its productId, so all reviews of a product
+ * are on the same shard and every call for a productId goes to exactly one shard.
+ *
+ * The shard of a product depends on the number of shards, changing it requires the reviews to be moved.
+ */
+public class ReviewShards implements DisposableBean {
+
+    private final List<ReviewShard> shards;
+
+    public ReviewShards(List<ReviewShard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one review shard is required");
+        }
+        this.shards = unmodifiableList(new ArrayList<>(shards));
+    }
+
+    public List<ReviewShard> getShards() {
+        return shards;
+    }
+
+    public ReviewShard forProductId(int productId) {
+        return shards.get(shardIndex(productId, shards.size()));
+    }
+
+    /**
+     * @return the productIds per shard, in the order of the shards
+     */
+    public Map<ReviewShard, List<Integer>> groupByShard(Collection<Integer> productIds) {
+        Map<ReviewShard, List<Integer>> productIdsByShard = new LinkedHashMap<>();
+        shards.forEach(shard -> productIdsByShard.put(shard, new ArrayList<>()));
+        productIds.forEach(productId -> productIdsByShard.get(forProductId(productId)).add(productId));
+        productIdsByShard.values().removeIf(List::isEmpty);
+        return productIdsByShard;
+    }
+
+    // The murmur3 finalizer spreads consecutive productIds evenly, it must not change once reviews are stored
+    static int shardIndex(int productId, int shardCount) {
+        int h = productId;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shardCount);
+    }
+
+    @Override
+    public void destroy() {
+        shards.forEach(ReviewShard::close);
+    }
+}
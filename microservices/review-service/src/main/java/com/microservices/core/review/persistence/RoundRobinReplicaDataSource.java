@@ -0,0 +1,87 @@
+package com.microservices.core.review.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out connections from a pool per replica in round robin order. A replica that fails to give a connection
+ * is skipped for {@code retry-after-ms}, and when no replica is available connections are taken from the primary,
+ * i.e. reads get slower but don't fail when the replicas are down.
+ */
+public class RoundRobinReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoundRobinReplicaDataSource.class);
+
+    private final List<HikariDataSource> replicas;
+
+    private final DataSource primary;
+
+    private final long retryAfterNanos;
+
+    // 0 when the replica is up, otherwise the System.nanoTime() when it is retried
+    private final AtomicLongArray downUntil;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public RoundRobinReplicaDataSource(List<HikariDataSource> replicas, DataSource primary, long retryAfterMs) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.replicas = new ArrayList<>(replicas);
+        this.primary = primary;
+        this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
+        this.downUntil = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int size = replicas.size();
+        int first = Math.floorMod(next.getAndIncrement(), size);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < size; i++) {
+            int replica = (first + i) % size;
+            long retryAt = downUntil.get(replica);
+            if (retryAt != 0 && retryAt - now > 0) {
+                continue;
+            }
+
+            try {
+                Connection connection = replicas.get(replica).getConnection();
+                downUntil.set(replica, 0);
+                return connection;
+
+            } catch (SQLException | RuntimeException e) {
+                // Hikari fails with a RuntimeException if the pool of a replica can't be started
+                LOG.warn("Replica {} is not available, will retry it in {} ms, error: {}",
+                        replicas.get(replica).getPoolName(), TimeUnit.NANOSECONDS.toMillis(retryAfterNanos), e.toString());
+                downUntil.set(replica, now + retryAfterNanos);
+            }
+        }
+
+        LOG.debug("No replica is available, reads from the primary");
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,204 @@
+package com.microservices.core.review.services;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.microservices.core.review.persistence.ReplicaRoutingDataSource;
+import com.microservices.core.review.persistence.ReplicaRoutingDataSource.Route;
+import com.microservices.core.review.persistence.ReplicaStalenessGuard;
+import com.microservices.core.review.persistence.ReviewEntity;
+import com.microservices.core.review.persistence.ReviewShard;
+import com.microservices.core.review.persistence.ReviewShards;
+import com.microservices.util.BulkEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies a batch of review events on the scheduler of each review shard. The reviews of all CREATE events in
+ * a segment are inserted with one saveAll call per shard, i.e. in one transaction per shard sent as JDBC batches.
+ *
+ * The batch is split into segments where a productId is never both deleted and created, segments are
+ * written one after the other to keep the order of events for a product, while the shards of a segment are
+ * written concurrently. If the insert of a segment on a shard fails on a constraint, e.g. a duplicate key,
+ * the transaction is rolled back and its reviews are saved one by one so that only the failing events are
+ * sent to the DLQ. A duplicate of a review that is stored with the same content counts as saved.
+ *
+ * Each repository call is retried on its own, so a retry never repeats a delete, an insert or a DLQ dispatch
+ * that already succeeded.
+ */
+@Component
+@ConditionalOnProperty(name = "app.review.persistence", havingValue = "jpa", matchIfMissing = true)
+public class BulkEventProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkEventProcessor.class);
+
+    private final ReviewShards shards;
+
+    private final ReplicaStalenessGuard stalenessGuard;
+
+    private final ReviewMapper mapper;
+
+    private final BulkEvents<Review> bulkEvents;
+
+    @Autowired
+    public BulkEventProcessor(ReviewShards shards, ReplicaStalenessGuard stalenessGuard, ReviewMapper mapper, StreamBridge streamBridge) {
+        this.shards = shards;
+        this.stalenessGuard = stalenessGuard;
+        this.mapper = mapper;
+        this.bulkEvents = new BulkEvents<>(event -> streamBridge.send("deadLetters-out-0", event));
+    }
+
+    public Mono<Void> process(List<Event<Integer, Review>> events) {
+        LOG.info("Process a batch of {} events...", events.size());
+
+        return Flux.fromIterable(bulkEvents.splitIntoSegments(events))
+                .concatMap(this::writeSegment)
+                .then();
+    }
+
+    private Mono<Void> writeSegment(List<Event<Integer, Review>> segment) {
+        return Flux.fromIterable(bulkEvents.groupBy(segment, event -> shards.forProductId(productIdOf(event))).entrySet())
+                .flatMap(e -> writeShardSegment(e.getKey(), e.getValue()))
+                .then();
+    }
+
+    // Invalid events are sent to the DLQ once, before any write, and a retry only repeats the call that failed
+    private Mono<Void> writeShardSegment(ReviewShard shard, List<Event<Integer, Review>> segment) {
+        List<Event<Integer, Review>> deleteEvents = new ArrayList<>();
+        List<Event<Integer, Review>> createEvents = new ArrayList<>();
+
+        for (Event<Integer, Review> event : segment) {
+
+            if (event.getEventType() == null) {
+                bulkEvents.sendToDeadLetters(event, "Missing event type, expected a CREATE or DELETE event");
+                continue;
+            }
+
+            switch (event.getEventType()) {
+
+                case CREATE:
+                    if (event.getData().getProductId() < 1) {
+                        bulkEvents.sendToDeadLetters(event, "Invalid productId: " + event.getData().getProductId());
+                    } else {
+                        createEvents.add(event);
+                    }
+                    break;
+
+                case DELETE:
+                    if (event.getKey() < 1) {
+                        bulkEvents.sendToDeadLetters(event, "Invalid productId: " + event.getKey());
+                    } else {
+                        deleteEvents.add(event);
+                    }
+                    break;
+
+                default:
+                    bulkEvents.sendToDeadLetters(event, "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event");
+            }
+        }
+
+        // A segment never both deletes and creates reviews of a product, so the deletes and inserts are independent
+        return Mono.when(deleteAll(shard, deleteEvents), saveAll(shard, createEvents))
+                .doFinally(signal -> {
+                    deleteEvents.forEach(event -> stalenessGuard.recordWrite(event.getKey()));
+                    createEvents.forEach(event -> stalenessGuard.recordWrite(event.getData().getProductId()));
+                });
+    }
+
+    // Created reviews are routed by their productId, like in ReviewServiceImpl
+    private int productIdOf(Event<Integer, Review> event) {
+        return event.getData() != null ? event.getData().getProductId() : event.getKey();
+    }
+
+    private Mono<Void> deleteAll(ReviewShard shard, List<Event<Integer, Review>> deleteEvents) {
+        return Flux.fromIterable(deleteEvents)
+                .concatMap(event -> onShard(shard, () -> shard.getRepository().deleteByProductId(event.getKey()))
+                        .onErrorResume(ex -> {
+                            bulkEvents.sendToDeadLetters(event, ex.toString());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Void> saveAll(ReviewShard shard, List<Event<Integer, Review>> createEvents) {
+        if (createEvents.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // saveAll runs in one transaction, so a failed attempt is rolled back and leaves nothing to repeat
+        return onShard(shard, () -> shard.getRepository().saveAll(toEntities(createEvents)))
+                .doOnSuccess(v -> LOG.debug("Inserted {} reviews in one batch on shard {}", createEvents.size(), shard.getIndex()))
+                .onErrorResume(DataIntegrityViolationException.class, dive -> {
+                    LOG.info("Batch insert of {} reviews failed, will insert them one by one, error: {}", createEvents.size(), dive.getMessage());
+                    return Flux.fromIterable(createEvents).concatMap(event -> saveOne(shard, event)).then();
+                })
+                .onErrorResume(ex -> {
+                    LOG.warn("Write of {} reviews on shard {} failed, will send them to the DLQ, error: {}", createEvents.size(), shard.getIndex(), ex.toString());
+                    createEvents.forEach(event -> bulkEvents.sendToDeadLetters(event, ex.toString()));
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> saveOne(ReviewShard shard, Event<Integer, Review> event) {
+        Review review = event.getData();
+
+        return onShard(shard, () -> shard.getRepository().save(mapper.apiToEntity(review)))
+                .onErrorResume(DataIntegrityViolationException.class, dive -> isStored(shard, review)
+                        .doOnNext(stored -> {
+                            if (stored) {
+                                LOG.debug("Review with productId: {}, reviewId: {} is already stored, the event is skipped", review.getProductId(), review.getReviewId());
+                            } else {
+                                bulkEvents.sendToDeadLetters(event, "Duplicate key, Product Id: " + review.getProductId() + ", Review Id:" + review.getReviewId());
+                            }
+                        })
+                        .then())
+                .onErrorResume(ex -> {
+                    bulkEvents.sendToDeadLetters(event, ex.toString());
+                    return Mono.empty();
+                });
+    }
+
+    // A duplicate with the same content is an event that was already applied, e.g. by a redelivery, read from the primary
+    private Mono<Boolean> isStored(ReviewShard shard, Review review) {
+        return Mono.fromCallable(() -> ReplicaRoutingDataSource.read(Route.PRIMARY,
+                        () -> shard.getRepository().findReviewsPage(review.getProductId(), review.getReviewId() - 1, PageRequest.of(0, 1))))
+                .subscribeOn(shard.getScheduler())
+                .map(stored -> !stored.isEmpty()
+                        && stored.get(0).getReviewId() == review.getReviewId()
+                        && Objects.equals(stored.get(0).getAuthor(), review.getAuthor())
+                        && Objects.equals(stored.get(0).getSubject(), review.getSubject())
+                        && Objects.equals(stored.get(0).getContent(), review.getContent()))
+                .onErrorReturn(false);
+    }
+
+    // Runs one blocking repository call on the scheduler of the shard, retried on transient errors but not on constraint violations
+    private Mono<Void> onShard(ReviewShard shard, Runnable call) {
+        return Mono.fromRunnable(call)
+                .subscribeOn(shard.getScheduler())
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof DataIntegrityViolationException))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .then();
+    }
+
+    // New entities are created for every attempt, entities from a rolled back saveAll already have ids assigned
+    private List<ReviewEntity> toEntities(List<Event<Integer, Review>> events) {
+        List<ReviewEntity> entities = new ArrayList<>(events.size());
+        events.forEach(event -> entities.add(mapper.apiToEntity(event.getData())));
+        return entities;
+    }
+}
@@ -3,14 +3,24 @@ package com.microservices.core.review.services;
 import com.microservices.api.core.review.Review;
 import com.microservices.api.core.review.ReviewService;
 import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.util.http.EventProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.microservices.api.event.Event.Type.CREATE;
 import static com.microservices.api.event.Event.Type.DELETE;
@@ -22,12 +32,35 @@ public class MessageProcessorConfig {
 
     private final ReviewService reviewService;
 
+    private final StreamBridge streamBridge;
+
+    private final ObjectProvider<BulkEventProcessor> bulkEventProcessor;
+
+    private final int concurrency;
+
+    private final int batchSize;
+
+    private final int batchTimeoutMs;
+
     @Autowired
-    public MessageProcessorConfig(ReviewService reviewService) {
+    public MessageProcessorConfig(
+            ReviewService reviewService,
+            StreamBridge streamBridge,
+            ObjectProvider<BulkEventProcessor> bulkEventProcessor,
+            @Value("${app.message-processor.concurrency:4}") int concurrency,
+            @Value("${app.message-processor.batch.size:500}") int batchSize,
+            @Value("${app.message-processor.batch.timeout-ms:100}") int batchTimeoutMs) {
+
         this.reviewService = reviewService;
+        this.streamBridge = streamBridge;
+        this.bulkEventProcessor = bulkEventProcessor;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
     @Bean
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "blocking", matchIfMissing = true)
     public Consumer<Event<Integer, Review>> messageProcessor() {
         return event -> {
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
@@ -55,4 +88,96 @@ public class MessageProcessorConfig {
             LOG.info("Message processing done!");
         };
     }
+
+    /**
+     * Processes events without blocking the binder thread. Events are spread over a fixed number of
+     * lanes by key, each lane is processed in order and up to {@code concurrency} lanes run in parallel,
+     * i.e. events for the same productId keep their order while different productIds are processed concurrently.
+     *
+     * Retries and DLQ handling of the binder do not apply to reactive functions, so failed events
+     * are retried here and then published to the deadLetters-out-0 binding, i.e. to reviews.dlq instead of the DLQ
+     * bound by the binder. Events without a key, or CREATE events without data, go there right away, since they
+     * can't be assigned to a lane. The binder acknowledges a message when it is emitted into the Flux, before it is
+     * processed, so the events in flight when an instance stops are lost. Use the blocking mode where every event
+     * must be delivered at least once.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "reactive")
+    public Function<Flux<Event<Integer, Review>>, Mono<Void>> reactiveMessageProcessor() {
+        LOG.info("Creates a reactive messageProcessor with concurrency = {}", concurrency);
+
+        return events -> events
+                .filter(this::isProcessable)
+                .groupBy(event -> Math.floorMod(event.getKey(), concurrency))
+                .flatMap(lane -> lane.concatMap(this::processEvent), concurrency)
+                .then();
+    }
+
+    /**
+     * Collects events until {@code batch.size} events are received or {@code batch.timeout-ms} has passed,
+     * and applies each batch with JDBC batch inserts. Batches are applied one at a time to keep the order of events.
+     * Requires the jpa persistence mode.
+     *
+     * As in the reactive mode, events without a key, or CREATE events without data, are sent to the
+     * deadLetters-out-0 binding right away, before they are buffered. The binder acknowledges a message when it is
+     * emitted into the Flux, before its batch is applied, so the events buffered or in flight when an instance stops
+     * are lost. Use the blocking mode where every event must be delivered at least once.
+     */
+    @Bean(name = "messageProcessor")
+    @ConditionalOnProperty(name = "app.message-processor.mode", havingValue = "batch")
+    public Function<Flux<Event<Integer, Review>>, Mono<Void>> batchMessageProcessor() {
+        LOG.info("Creates a batching messageProcessor with batch size = {} and timeout = {} ms", batchSize, batchTimeoutMs);
+
+        BulkEventProcessor processor = bulkEventProcessor.getObject();
+
+        return events -> events
+                .filter(this::isProcessable)
+                .bufferTimeout(batchSize, Duration.ofMillis(batchTimeoutMs))
+                .concatMap(processor::process)
+                .then();
+    }
+
+    // An error here would terminate the inbound Flux and stop the binding for good, so invalid events are dead-lettered
+    private boolean isProcessable(Event<Integer, Review> event) {
+        if (event.getKey() != null && (event.getEventType() != CREATE || event.getData() != null)) {
+            return true;
+        }
+
+        LOG.warn("Invalid {} event for productId: {}, will send it to the DLQ", event.getEventType(), event.getKey());
+        streamBridge.send("deadLetters-out-0", event);
+        return false;
+    }
+
+    private Mono<Void> processEvent(Event<Integer, Review> event) {
+        return Mono.defer(() -> {
+                    LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+                    switch (event.getEventType()) {
+
+                        case CREATE:
+                            Review review = event.getData();
+                            LOG.info("Create review with ID: {}/{}", review.getProductId(), review.getReviewId());
+                            return reviewService.createReview(review).then();
+
+                        case DELETE:
+                            int productId = event.getKey();
+                            LOG.info("Delete reviews with ProductID: {}", productId);
+                            return reviewService.deleteReviews(productId);
+
+                        default:
+                            String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                            LOG.warn(errorMessage);
+                            return Mono.<Void>error(new EventProcessingException(errorMessage));
+                    }
+                })
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofMillis(1000))
+                        .filter(ex -> !(ex instanceof InvalidInputException) && !(ex instanceof EventProcessingException)))
+                .doOnSuccess(v -> LOG.info("Message processing done!"))
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to process event for productId: {}, will send it to the DLQ, error: {}", event.getKey(), ex.toString());
+                    streamBridge.send("deadLetters-out-0", event);
+                    return Mono.empty();
+                });
+    }
 }
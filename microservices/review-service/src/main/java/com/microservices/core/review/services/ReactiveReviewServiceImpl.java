@@ -0,0 +1,159 @@
+package com.microservices.core.review.services;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.core.review.ReviewService;
+import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.core.review.persistence.ReactiveReviewEntity;
+import com.microservices.core.review.persistence.ReactiveReviewRepository;
+import com.microservices.core.review.persistence.ReviewIdAllocator;
+import com.microservices.util.http.ServiceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.microservices.util.ProductIds.validateProductIds;
+import static java.util.logging.Level.FINE;
+
+/**
+ * Review service on R2DBC, selected with app.review.persistence=r2dbc. All calls run on the
+ * non-blocking R2DBC driver and its connection pool, i.e. without the jdbcScheduler.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.review.persistence", havingValue = "r2dbc")
+public class ReactiveReviewServiceImpl implements ReviewService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveReviewServiceImpl.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReactiveReviewRepository repository;
+
+    private final ReviewIdAllocator idAllocator;
+
+    private final ReviewMapper mapper;
+
+    private final ServiceUtil serviceUtil;
+
+    @Autowired
+    public ReactiveReviewServiceImpl(ReactiveReviewRepository repository, ReviewIdAllocator idAllocator, ReviewMapper mapper, ServiceUtil serviceUtil) {
+        this.repository = repository;
+        this.idAllocator = idAllocator;
+        this.mapper = mapper;
+        this.serviceUtil = serviceUtil;
+    }
+
+    @Override
+    public Mono<Review> createReview(Review body) {
+
+        if (body.getProductId() < 1) {
+            throw new InvalidInputException("Invalid productId: " + body.getProductId());
+        }
+
+        ReactiveReviewEntity entity = mapper.apiToReactiveEntity(body);
+
+        return idAllocator.nextId()
+                .flatMap(id -> {
+                    entity.setId(id);
+                    return repository.save(entity);
+                })
+                .log(null, FINE)
+                .onErrorMap(
+                        DataIntegrityViolationException.class,
+                        ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Review Id:" + body.getReviewId()))
+                .doOnNext(e -> LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId()))
+                .map(mapper::reactiveEntityToApi);
+    }
+
+    @Override
+    public Flux<Review> getReviews(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        LOG.info("Will get reviews for product with id={}", productId);
+
+        return repository.findByProductId(productId)
+                .log(null, FINE)
+                .map(mapper::reactiveEntityToApi)
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Review> getReviewsByProductIds(List<Integer> productIds) {
+
+        validateProductIds(productIds);
+
+        LOG.info("Will get reviews for {} product ids", productIds.size());
+
+        return repository.findByProductIdIn(productIds, Sort.by("productId", "reviewId"))
+                .log(null, FINE)
+                .map(mapper::reactiveEntityToApi)
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Flux<Review> getReviewsPage(int productId, int after, int limit) {
+
+        validatePage(productId, after, limit);
+
+        LOG.info("Will get at most {} reviews after reviewId={} for product with id={}", limit, after, productId);
+
+        return repository.findPage(productId, after, limit)
+                .log(null, FINE)
+                .map(mapper::reactiveEntityToApi)
+                .map(this::setServiceAddress);
+    }
+
+    @Override
+    public Mono<Long> countReviews(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        return repository.countByProductId(productId);
+    }
+
+    @Override
+    public Mono<Void> deleteReviews(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
+
+        return repository.deleteByProductId(productId)
+                .doOnNext(count -> LOG.debug("deleteReviews: deleted {} entities", count))
+                .then();
+    }
+
+    private void validatePage(int productId, int after, int limit) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        if (after < 0) {
+            throw new InvalidInputException("Invalid after: " + after);
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private Review setServiceAddress(Review e) {
+        e.setServiceAddress(serviceUtil.getServiceAddress());
+        return e;
+    }
+}
@@ -1,6 +1,7 @@
 package com.microservices.core.review.services;
 
 import com.microservices.api.core.review.Review;
+import com.microservices.core.review.persistence.ReactiveReviewEntity;
 import com.microservices.core.review.persistence.ReviewEntity;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -25,4 +26,15 @@ public interface ReviewMapper {
     List<Review> entityListToApiList(List<ReviewEntity> entity);
 
     List<ReviewEntity> apiListToEntityList(List<Review> api);
+
+    @Mappings({
+            @Mapping(target = "serviceAddress", ignore = true)
+    })
+    Review reactiveEntityToApi(ReactiveReviewEntity entity);
+
+    @Mappings({
+            @Mapping(target = "id", ignore = true),
+            @Mapping(target = "version", ignore = true)
+    })
+    ReactiveReviewEntity apiToReactiveEntity(Review api);
 }
@@ -3,43 +3,69 @@ package com.microservices.core.review.services;
 import com.microservices.api.core.review.Review;
 import com.microservices.api.core.review.ReviewService;
 import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.api.exceptions.ServiceUnavailableException;
+import com.microservices.core.review.persistence.ReplicaRoutingDataSource.Route;
+import com.microservices.core.review.persistence.ReplicaStalenessGuard;
 import com.microservices.core.review.persistence.ReviewEntity;
-import com.microservices.core.review.persistence.ReviewRepository;
+import com.microservices.core.review.persistence.ReviewShard;
+import com.microservices.core.review.persistence.ReviewShards;
 import com.microservices.util.http.ServiceUtil;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Supplier;
 
+import static com.microservices.core.review.persistence.ReplicaRoutingDataSource.read;
+import static com.microservices.util.ProductIds.validateProductIds;
+import static java.util.Comparator.comparingInt;
 import static java.util.logging.Level.FINE;
 
 @RestController
+@ConditionalOnProperty(name = "app.review.persistence", havingValue = "jpa", matchIfMissing = true)
 public class ReviewServiceImpl implements ReviewService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceImpl.class);
 
-    private final ReviewRepository repository;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ReviewShards shards;
+
+    private final ReplicaStalenessGuard stalenessGuard;
 
     private final ReviewMapper mapper;
 
     private final ServiceUtil serviceUtil;
 
-    private final Scheduler scheduler;
+    private final boolean cacheEnabled;
+
+    private final int streamPageSize;
 
     @Autowired
-    public ReviewServiceImpl(Scheduler scheduler, ReviewRepository repository, ReviewMapper mapper, ServiceUtil serviceUtil) {
-        this.scheduler = scheduler;
-        this.repository = repository;
+    public ReviewServiceImpl(
+            ReviewShards shards,
+            ReplicaStalenessGuard stalenessGuard,
+            ReviewMapper mapper,
+            ServiceUtil serviceUtil,
+            @Value("${app.review.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${app.review.stream.page-size:1000}") int streamPageSize) {
+
+        this.shards = shards;
+        this.stalenessGuard = stalenessGuard;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
+        this.cacheEnabled = cacheEnabled;
+        this.streamPageSize = streamPageSize;
     }
 
     @Override
@@ -49,13 +75,15 @@ public class ReviewServiceImpl implements ReviewService {
             throw new InvalidInputException("Invalid productId: " + body.getProductId());
         }
 
-        return asyncMono(() -> Mono.fromCallable(() -> internalCreateReview(body)));
+        ReviewShard shard = shards.forProductId(body.getProductId());
+        return asyncMono(shard, () -> Mono.fromCallable(() -> internalCreateReview(shard, body)));
     }
 
-    private Review internalCreateReview(Review body) {
+    private Review internalCreateReview(ReviewShard shard, Review body) {
         try {
             ReviewEntity entity = mapper.apiToEntity(body);
-            ReviewEntity newEntity = repository.save(entity);
+            ReviewEntity newEntity = shard.getRepository().save(entity);
+            stalenessGuard.recordWrite(body.getProductId());
 
             LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId());
             return mapper.entityToApi(newEntity);
@@ -74,12 +102,19 @@ public class ReviewServiceImpl implements ReviewService {
 
         LOG.info("Will get reviews for product with id={}", productId);
 
-        return asyncFlux(() -> Flux.fromIterable(internalGetReviews(productId))).log(null, FINE);
+        ReviewShard shard = shards.forProductId(productId);
+
+        if (cacheEnabled) {
+            return asyncFlux(shard, () -> Flux.fromIterable(internalGetCachedReviews(shard, productId))).log(null, FINE);
+        }
+
+        return asyncFlux(shard, () -> internalGetReviews(shard, productId, Integer.MIN_VALUE, stalenessGuard.readRoute(productId))).log(null, FINE);
     }
 
-    private List<Review> internalGetReviews(int productId) {
+    // Reads through the second-level and query cache, a cache hit doesn't touch the database
+    private List<Review> internalGetCachedReviews(ReviewShard shard, int productId) {
 
-        List<ReviewEntity> entityList = repository.findByProductId(productId);
+        List<ReviewEntity> entityList = read(stalenessGuard.readRoute(productId), () -> shard.getRepository().findByProductId(productId));
         List<Review> list = mapper.entityListToApiList(entityList);
         list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
 
@@ -88,6 +123,80 @@ public class ReviewServiceImpl implements ReviewService {
         return list;
     }
 
+    // Reads the reviews as keyset pages of stream-page-size reviews, each one after the last reviewId of the previous page.
+    // The next page is only read when the previous one is consumed, on the scheduler of the shard, and no connection is
+    // held between pages, so a slow client holds neither a connection nor a thread and the response is never cut short
+    private Flux<Review> internalGetReviews(ReviewShard shard, int productId, int after, Route route) {
+
+        List<Review> page = read(route, () -> shard.getRepository().findReviewsPage(productId, after, PageRequest.of(0, streamPageSize)));
+        page.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+
+        Flux<Review> reviews = Flux.fromIterable(page);
+        if (page.size() == streamPageSize) {
+            int last = page.get(page.size() - 1).getReviewId();
+            LOG.debug("getReviews: reads the next page after reviewId: {} for productId: {}", last, productId);
+            reviews = reviews.concatWith(asyncFlux(shard, () -> internalGetReviews(shard, productId, last, route)));
+        }
+
+        return reviews;
+    }
+
+    @Override
+    public Flux<Review> getReviewsByProductIds(List<Integer> productIds) {
+
+        validateProductIds(productIds);
+
+        LOG.info("Will get reviews for {} product ids", productIds.size());
+
+        // One query per shard, run concurrently on the scheduler of each shard
+        return Flux.fromIterable(shards.groupByShard(productIds).entrySet())
+                .flatMap(e -> asyncFlux(e.getKey(), () -> Flux.fromIterable(internalGetReviewsByProductIds(e.getKey(), e.getValue()))))
+                .sort(comparingInt(Review::getProductId).thenComparingInt(Review::getReviewId))
+                .log(null, FINE);
+    }
+
+    private List<Review> internalGetReviewsByProductIds(ReviewShard shard, List<Integer> productIds) {
+
+        List<Review> list = read(stalenessGuard.readRoute(productIds), () -> shard.getRepository().findReviewsByProductIdIn(productIds));
+        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+
+        LOG.debug("getReviewsByProductIds: response size: {}", list.size());
+
+        return list;
+    }
+
+    @Override
+    public Flux<Review> getReviewsPage(int productId, int after, int limit) {
+
+        validatePage(productId, after, limit);
+
+        LOG.info("Will get at most {} reviews after reviewId={} for product with id={}", limit, after, productId);
+
+        ReviewShard shard = shards.forProductId(productId);
+        return asyncFlux(shard, () -> Flux.fromIterable(internalGetReviewsPage(shard, productId, after, limit))).log(null, FINE);
+    }
+
+    private List<Review> internalGetReviewsPage(ReviewShard shard, int productId, int after, int limit) {
+
+        List<Review> list = read(stalenessGuard.readRoute(productId), () -> shard.getRepository().findReviewsPage(productId, after, PageRequest.of(0, limit)));
+        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+
+        LOG.debug("getReviewsPage: response size: {}", list.size());
+
+        return list;
+    }
+
+    @Override
+    public Mono<Long> countReviews(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        ReviewShard shard = shards.forProductId(productId);
+        return asyncMono(shard, () -> Mono.fromCallable(() -> read(stalenessGuard.readRoute(productId), () -> shard.getRepository().countByProductId(productId))));
+    }
+
     @Override
     public Mono<Void> deleteReviews(int productId) {
 
@@ -95,21 +204,45 @@ public class ReviewServiceImpl implements ReviewService {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
-        return asyncMono(() -> Mono.fromRunnable(() -> internalDeleteReviews(productId)));
+        ReviewShard shard = shards.forProductId(productId);
+        return asyncMono(shard, () -> Mono.fromRunnable(() -> internalDeleteReviews(shard, productId)));
     }
 
-    private void internalDeleteReviews(int productId) {
+    private void internalDeleteReviews(ReviewShard shard, int productId) {
+
+        LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {} on shard {}", productId, shard.getIndex());
+
+        int count = shard.getRepository().deleteByProductId(productId);
+        stalenessGuard.recordWrite(productId);
+        LOG.debug("deleteReviews: deleted {} entities", count);
+    }
+
+    private void validatePage(int productId, int after, int limit) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
 
-        LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
+        if (after < 0) {
+            throw new InvalidInputException("Invalid after: " + after);
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + MAX_PAGE_SIZE);
+        }
+    }
 
-        repository.deleteAll(repository.findByProductId(productId));
+    private <T> Flux<T> asyncFlux(ReviewShard shard, Supplier<Publisher<T>> publisherSupplier) {
+        return Flux.defer(publisherSupplier).subscribeOn(shard.getScheduler()).onErrorMap(RejectedExecutionException.class, this::overloaded);
     }
 
-    private <T> Flux<T> asyncFlux(Supplier<Publisher<T>> publisherSupplier) {
-        return Flux.defer(publisherSupplier).subscribeOn(scheduler);
+    private <T> Mono<T> asyncMono(ReviewShard shard, Supplier<Mono<T>> publisherSupplier) {
+        return Mono.defer(publisherSupplier).subscribeOn(shard.getScheduler()).onErrorMap(RejectedExecutionException.class, this::overloaded);
     }
 
-    private <T> Mono<T> asyncMono(Supplier<Mono<T>> publisherSupplier) {
-        return Mono.defer(publisherSupplier).subscribeOn(scheduler);
+    // The queue of the scheduler of the shard is full, fail fast instead of queueing calls that will time out anyway
+    private ServiceUnavailableException overloaded(RejectedExecutionException ex) {
+        LOG.warn("Rejected a call since the scheduler of a review shard is overloaded: {}", ex.getMessage());
+        return new ServiceUnavailableException("Review service is overloaded, try again later");
     }
 }
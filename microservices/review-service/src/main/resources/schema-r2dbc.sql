@@ -0,0 +1,21 @@
+-- Schema for the r2dbc persistence mode, compatible with the tables JPA creates for ReviewEntity.
+-- Applied automatically to embedded databases, use spring.sql.init.mode=always to apply it to MySQL.
+
+CREATE TABLE IF NOT EXISTS reviews (
+    id INT NOT NULL,
+    version INT NOT NULL,
+    product_id INT NOT NULL,
+    review_id INT NOT NULL,
+    author VARCHAR(255),
+    subject VARCHAR(255),
+    content VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT reviews_unique_idx UNIQUE (product_id, review_id)
+);
+
+CREATE TABLE IF NOT EXISTS hibernate_sequence (
+    next_val BIGINT
+);
+
+INSERT INTO hibernate_sequence (next_val)
+    SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM hibernate_sequence);
@@ -0,0 +1,52 @@
+package com.microservices.core.review;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitingExecutorTests {
+
+	private final ExecutorService delegate = Executors.newCachedThreadPool();
+
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	private final ConcurrencyLimitingExecutor executor = new ConcurrencyLimitingExecutor(delegate, 1, 1, rejected::incrementAndGet);
+
+	@AfterEach
+	public void shutdown() {
+		delegate.shutdownNow();
+	}
+
+	@Test
+	public void rejectWhenQueueIsFull() throws InterruptedException {
+
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+
+		executor.execute(() -> awaitAndCountDown(release, done));
+		executor.execute(() -> awaitAndCountDown(release, done));
+
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+		assertEquals(1, rejected.get());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	private void awaitAndCountDown(CountDownLatch release, CountDownLatch done) {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		done.countDown();
+	}
+}
@@ -1,5 +1,6 @@
 package com.microservices.core.review;
 
+import com.microservices.api.core.review.Review;
 import com.microservices.core.review.persistence.ReviewEntity;
 import com.microservices.core.review.persistence.ReviewRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,6 +69,14 @@ public class PersistenceTests {
         assertFalse(repository.existsById(savedEntity.getId()));
     }
 
+    @Test
+    public void deleteByProductId() {
+        repository.save(new ReviewEntity(savedEntity.getProductId(), 3, "a", "s", "c"));
+
+        assertEquals(2, repository.deleteByProductId(savedEntity.getProductId()));
+        assertEquals(0, repository.count());
+    }
+
     @Test
     public void getByProductId() {
         List<ReviewEntity> entityList = repository.findByProductId(savedEntity.getProductId());
@@ -75,6 +85,20 @@ public class PersistenceTests {
         assertEqualsReview(savedEntity, entityList.get(0));
     }
 
+    @Test
+    public void getProjectionByProductIds() {
+        repository.save(new ReviewEntity(savedEntity.getProductId(), 1, "a", "s", "c"));
+
+        List<Review> reviews = repository.findReviewsByProductIdIn(singletonList(savedEntity.getProductId()));
+
+        assertThat(reviews, hasSize(2));
+        assertEquals(1, reviews.get(0).getReviewId());
+        assertEquals(savedEntity.getReviewId(), reviews.get(1).getReviewId());
+        assertEquals(savedEntity.getAuthor(), reviews.get(1).getAuthor());
+        assertEquals(savedEntity.getSubject(), reviews.get(1).getSubject());
+        assertEquals(savedEntity.getContent(), reviews.get(1).getContent());
+    }
+
     @Test
     public void duplicateError() {
         assertThrows(DataIntegrityViolationException.class, () -> {
@@ -0,0 +1,135 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.core.review.persistence.ReactiveReviewEntity;
+import com.microservices.core.review.persistence.ReactiveReviewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@ActiveProfiles("r2dbc")
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=DEBUG",
+		"spring.r2dbc.url=r2dbc:h2:mem:///review-db;DB_CLOSE_DELAY=-1",
+		"spring.r2dbc.username=sa",
+		"spring.r2dbc.password="})
+public class ReactiveReviewServiceTests {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReactiveReviewRepository repository;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Review>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll().block();
+	}
+
+	@Test
+	public void getReviewsByProductId() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId, 2);
+		sendCreateReviewEvent(productId, 3);
+
+		List<ReactiveReviewEntity> entities = repository.findByProductId(productId).collectList().block();
+		assertEquals(3, entities.size());
+		assertEquals(3, entities.stream().mapToInt(ReactiveReviewEntity::getId).distinct().count());
+
+		getAndVerifyReviews("?productId=" + productId, OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[2].productId").isEqualTo(productId)
+				.jsonPath("$[2].reviewId").isEqualTo(3);
+	}
+
+	@Test
+	public void getReviewsByProductIds() {
+
+		sendCreateReviewEvent(2, 1);
+		sendCreateReviewEvent(1, 1);
+		sendCreateReviewEvent(2, 2);
+
+		getAndVerifyReviews("?productIds=1,2", OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[1].reviewId").isEqualTo(1)
+				.jsonPath("$[2].productId").isEqualTo(2)
+				.jsonPath("$[2].reviewId").isEqualTo(2);
+	}
+
+	@Test
+	public void duplicateError() {
+
+		sendCreateReviewEvent(1, 1);
+
+		InvalidInputException thrown = assertThrows(
+				InvalidInputException.class,
+				() -> sendCreateReviewEvent(1, 1),
+				"Expected a InvalidInputException here!");
+		assertEquals("Duplicate key, Product Id: 1, Review Id:1", thrown.getMessage());
+
+		assertEquals(1, (long)repository.count().block());
+	}
+
+	@Test
+	public void deleteReviews() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId, 2);
+		assertEquals(2, (long)repository.count().block());
+
+		sendDeleteReviewEvent(productId);
+		assertEquals(0, (long)repository.count().block());
+
+		sendDeleteReviewEvent(productId);
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyReviews(String query, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/review" + query)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private void sendCreateReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		Event<Integer, Review> event = new Event(CREATE, productId, review);
+		messageProcessor.accept(event);
+	}
+
+	private void sendDeleteReviewEvent(int productId) {
+		Event<Integer, Review> event = new Event(DELETE, productId, null);
+		messageProcessor.accept(event);
+	}
+}
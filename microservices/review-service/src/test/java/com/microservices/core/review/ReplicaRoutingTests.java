@@ -0,0 +1,110 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=DEBUG",
+		"spring.datasource.url=jdbc:h2:mem:review-primary-db",
+		"app.review.replicas.urls=" + ReplicaRoutingTests.REPLICA_URL,
+		"app.review.replicas.primary-after-write-ms=60000"})
+public class ReplicaRoutingTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:review-replica-db;DB_CLOSE_DELAY=-1";
+
+	private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "user", "pwd"));
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private HikariDataSource primaryDataSource;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Review>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		replica.execute("CREATE TABLE IF NOT EXISTS reviews (id INT PRIMARY KEY, version INT, product_id INT, review_id INT, " +
+				"author VARCHAR(255), subject VARCHAR(255), content VARCHAR(255))");
+		replica.update("DELETE FROM reviews");
+		new JdbcTemplate(primaryDataSource).update("DELETE FROM reviews");
+	}
+
+	@Test
+	public void readsGoToTheReplica() {
+
+		int productId = 2;
+		replica.update("INSERT INTO reviews VALUES (1, 0, ?, 1, 'Replica author', 's', 'c')", productId);
+
+		getAndVerifyReviews("?productId=" + productId)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].author").isEqualTo("Replica author");
+
+		getAndVerifyReviews("?productId=" + productId + "&limit=10")
+				.jsonPath("$.length()").isEqualTo(1);
+
+		getAndVerifyReviews("/count?productId=" + productId)
+				.jsonPath("$").isEqualTo(1);
+
+		assertEquals(0, countOnPrimary(productId));
+	}
+
+	@Test
+	public void recentWritesAreReadFromThePrimary() {
+
+		replica.update("INSERT INTO reviews VALUES (1, 0, 2, 1, 'Replica author', 's', 'c')");
+
+		int productId = 1;
+		sendCreateReviewEvent(productId, 1);
+		assertEquals(1, countOnPrimary(productId));
+
+		getAndVerifyReviews("?productId=" + productId)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].author").isEqualTo("Author 1");
+
+		// A recently written product sends the whole multi-product read to the primary
+		getAndVerifyReviews("?productIds=1,2")
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].productId").isEqualTo(productId);
+	}
+
+	private long countOnPrimary(int productId) {
+		return new JdbcTemplate(primaryDataSource).queryForObject("SELECT COUNT(*) FROM reviews WHERE product_id = ?", Long.class, productId);
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyReviews(String query) {
+		return client.get()
+				.uri("/review" + query)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private void sendCreateReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		Event<Integer, Review> event = new Event(CREATE, productId, review);
+		messageProcessor.accept(event);
+	}
+}
@@ -0,0 +1,123 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.microservices.core.review.persistence.ReviewCacheConfig;
+import com.microservices.core.review.persistence.ReviewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static com.microservices.core.review.persistence.ReviewCacheConfig.ENTITY_REGION;
+import static com.microservices.core.review.persistence.ReviewCacheConfig.QUERY_REGION;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=DEBUG",
+		"spring.datasource.url=jdbc:h2:mem:review-cache-db",
+		"app.review.cache.enabled=true"})
+public class ReviewCacheTests {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private CacheManager reviewCacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Review>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void getReviewsThroughCache() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId, 2);
+
+		getAndVerifyReviewCount(productId, 2);
+		assertTrue(reviewCacheManager.getCache(QUERY_REGION).iterator().hasNext());
+		assertTrue(reviewCacheManager.getCache(ENTITY_REGION).iterator().hasNext());
+
+		getAndVerifyReviewCount(productId, 2);
+	}
+
+	@Test
+	public void cacheIsRejectedWithPartitionedInstances() {
+		assertThrows(IllegalArgumentException.class, () -> new ReviewCacheConfig(10, 10, 600, true, 2));
+	}
+
+	@Test
+	public void invalidateOnCreateAndDelete() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		getAndVerifyReviewCount(productId, 1);
+
+		sendCreateReviewEvent(productId, 2);
+		getAndVerifyReviewCount(productId, 2);
+
+		sendDeleteReviewEvent(productId);
+		getAndVerifyReviewCount(productId, 0);
+
+		Cache<Object, Object> entityRegion = reviewCacheManager.getCache(ENTITY_REGION);
+		assertFalse(entityRegion.iterator().hasNext());
+	}
+
+	@Test
+	public void cacheMetrics() {
+
+		assertNotNull(meterRegistry.find("cache.gets").tag("cache", QUERY_REGION).tag("result", "hit").meter());
+		assertNotNull(meterRegistry.find("cache.gets").tag("cache", ENTITY_REGION).tag("result", "miss").meter());
+		assertNotNull(meterRegistry.find("cache.evictions").tag("cache", ENTITY_REGION).meter());
+	}
+
+	private void getAndVerifyReviewCount(int productId, int expectedCount) {
+		client.get()
+				.uri("/review?productId=" + productId)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(expectedCount);
+	}
+
+	private void sendCreateReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		Event<Integer, Review> event = new Event(CREATE, productId, review);
+		messageProcessor.accept(event);
+	}
+
+	private void sendDeleteReviewEvent(int productId) {
+		Event<Integer, Review> event = new Event(DELETE, productId, null);
+		messageProcessor.accept(event);
+	}
+}
@@ -0,0 +1,156 @@
+package com.microservices.core.review;
+
+import com.microservices.core.review.persistence.ReviewEntity;
+import com.microservices.core.review.persistence.ReviewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Measures the latency of GET /review?productId= under 1000 concurrent requests against MySQL in a container,
+ * once per jdbcScheduler mode. Run it with the benchmark task on a JDK with virtual threads, i.e. JDK 21 or later.
+ * On an older JDK the virtual mode would silently fall back to a fixed thread pool, so it is skipped instead.
+ *
+ * No results are recorded yet. Record the p50, p99 and max of both modes here, with the JDK that each run logs.
+ */
+@Tag("benchmark")
+public abstract class ReviewLatencyBenchmarkTests extends MySqlTestBase {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewLatencyBenchmarkTests.class);
+
+	private static final int CONCURRENT_REQUESTS = 1000;
+
+	private static final int WARMUP_REQUESTS = 200;
+
+	private static final int PRODUCT_ID = 1;
+
+	private static final int NUMBER_OF_REVIEWS = 10;
+
+	@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+			"spring.cloud.stream.defaultBinder=rabbit",
+			"logging.level.com.microservices=INFO",
+			"logging.level.org.hibernate.SQL=WARN",
+			"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+			"app.review.jdbc-scheduler.mode=fixed",
+			"app.review.jdbc-scheduler.queue-capacity=" + CONCURRENT_REQUESTS})
+	public static class FixedThreadPool extends ReviewLatencyBenchmarkTests {
+	}
+
+	@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+			"spring.cloud.stream.defaultBinder=rabbit",
+			"logging.level.com.microservices=INFO",
+			"logging.level.org.hibernate.SQL=WARN",
+			"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+			"app.review.jdbc-scheduler.mode=virtual",
+			"app.review.jdbc-scheduler.queue-capacity=" + CONCURRENT_REQUESTS})
+	public static class VirtualThreads extends ReviewLatencyBenchmarkTests {
+	}
+
+	@LocalServerPort
+	private int port;
+
+	@Value("${app.review.jdbc-scheduler.mode}")
+	private String mode;
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+		for (int reviewId = 1; reviewId <= NUMBER_OF_REVIEWS; reviewId++) {
+			repository.save(new ReviewEntity(PRODUCT_ID, reviewId, "a", "s", "c"));
+		}
+	}
+
+	@Test
+	public void getReviewsLatencyUnderConcurrentRequests() {
+
+		assumeTrue(!"virtual".equals(mode) || supportsVirtualThreads(), "The JVM has no virtual threads");
+
+		ConnectionProvider connectionProvider = ConnectionProvider.builder("benchmark")
+				.maxConnections(CONCURRENT_REQUESTS)
+				.pendingAcquireMaxCount(-1)
+				.build();
+		WebClient client = WebClient.builder()
+				.baseUrl("http://localhost:" + port)
+				.clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+				.build();
+
+		try {
+			sendConcurrentRequests(client, WARMUP_REQUESTS);
+
+			List<Long> latenciesNanos = sendConcurrentRequests(client, CONCURRENT_REQUESTS);
+			assertEquals(CONCURRENT_REQUESTS, latenciesNanos.size());
+
+			Collections.sort(latenciesNanos);
+			LOG.info("JDK: {} {}, jdbcScheduler mode: {}, {} concurrent requests, p50: {} ms, p99: {} ms, max: {} ms",
+					System.getProperty("java.vm.name"), System.getProperty("java.version"), mode, CONCURRENT_REQUESTS,
+					percentileMillis(latenciesNanos, 0.50),
+					percentileMillis(latenciesNanos, 0.99),
+					percentileMillis(latenciesNanos, 1.0));
+
+		} finally {
+			connectionProvider.dispose();
+		}
+	}
+
+	// The same lookup as JdbcSchedulerFactory, which falls back to a fixed thread pool if it fails
+	private static boolean supportsVirtualThreads() {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			executor.shutdown();
+			return true;
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	private List<Long> sendConcurrentRequests(WebClient client, int numberOfRequests) {
+		List<Long> latencies = Flux.range(0, numberOfRequests)
+				.flatMap(i -> timedGetReviews(client), numberOfRequests)
+				.collectList()
+				.block();
+		return new ArrayList<>(latencies);
+	}
+
+	private Mono<Long> timedGetReviews(WebClient client) {
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return client.get()
+					.uri("/review?productId=" + PRODUCT_ID)
+					.accept(APPLICATION_JSON)
+					.retrieve()
+					.bodyToMono(String.class)
+					.map(body -> System.nanoTime() - start);
+		});
+	}
+
+	private long percentileMillis(List<Long> sortedLatenciesNanos, double percentile) {
+		int index = (int) Math.ceil(percentile * sortedLatenciesNanos.size()) - 1;
+		return sortedLatenciesNanos.get(Math.max(index, 0)) / 1_000_000;
+	}
+}
@@ -0,0 +1,118 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.core.review.persistence.ReviewEntity;
+import com.microservices.core.review.persistence.ReviewRepository;
+import com.microservices.core.review.services.ReviewMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Compares reading reviews as entities that are mapped to API objects with reading them through the
+ * constructor expression projection. Reports the bytes allocated per request by the calling thread and
+ * the number of requests per second. Runs against MySQL in a container, run it with the benchmark task.
+ *
+ * No results are recorded yet. Record the bytes/request and requests/s of both reads here, with the JDK that
+ * each run logs.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = NONE, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=INFO",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"})
+public class ReviewReadBenchmarkTests extends MySqlTestBase {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewReadBenchmarkTests.class);
+
+	private static final int NUMBER_OF_PRODUCTS = 10;
+
+	private static final int REVIEWS_PER_PRODUCT = 50;
+
+	private static final int WARMUP_REQUESTS = 500;
+
+	private static final int MEASURED_REQUESTS = 2000;
+
+	private static final List<Integer> PRODUCT_IDS = Collections.unmodifiableList(productIds());
+
+	private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private ReviewMapper mapper;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+
+		List<ReviewEntity> entities = new ArrayList<>();
+		for (int productId : PRODUCT_IDS) {
+			for (int reviewId = 1; reviewId <= REVIEWS_PER_PRODUCT; reviewId++) {
+				entities.add(new ReviewEntity(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId));
+			}
+		}
+		repository.saveAll(entities);
+	}
+
+	@Test
+	public void entitiesVersusProjection() {
+
+		Supplier<List<Review>> entityRead = () -> mapper.entityListToApiList(repository.findByProductIdIn(PRODUCT_IDS, Sort.by("productId", "reviewId")));
+		Supplier<List<Review>> projectionRead = () -> repository.findReviewsByProductIdIn(PRODUCT_IDS);
+
+		assertEquals(NUMBER_OF_PRODUCTS * REVIEWS_PER_PRODUCT, entityRead.get().size());
+		assertEquals(NUMBER_OF_PRODUCTS * REVIEWS_PER_PRODUCT, projectionRead.get().size());
+
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+		measure("entities", entityRead);
+		measure("projection", projectionRead);
+	}
+
+	private void measure(String name, Supplier<List<Review>> read) {
+		for (int i = 0; i < WARMUP_REQUESTS; i++) {
+			read.get();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < MEASURED_REQUESTS; i++) {
+			read.get();
+		}
+
+		long elapsedNanos = System.nanoTime() - start;
+		long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		LOG.info("JDK: {} {}, read {} reviews per request with {}: {} bytes/request, {} requests/s",
+				System.getProperty("java.vm.name"), System.getProperty("java.version"),
+				NUMBER_OF_PRODUCTS * REVIEWS_PER_PRODUCT, name,
+				allocatedBytes / MEASURED_REQUESTS, Math.round(MEASURED_REQUESTS * 1_000_000_000.0 / elapsedNanos));
+	}
+
+	private static List<Integer> productIds() {
+		List<Integer> productIds = new ArrayList<>();
+		for (int productId = 1; productId <= NUMBER_OF_PRODUCTS; productId++) {
+			productIds.add(productId);
+		}
+		return productIds;
+	}
+}
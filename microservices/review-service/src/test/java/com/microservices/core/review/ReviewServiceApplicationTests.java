@@ -26,7 +26,8 @@ import static reactor.core.publisher.Mono.just;
 @SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
 		"spring.cloud.stream.defaultBinder=rabbit",
 		"logging.level.com.microservices=DEBUG",
-		"spring.datasource.url=jdbc:h2:mem:review-db"})
+		"spring.datasource.url=jdbc:h2:mem:review-db",
+		"app.review.stream.page-size=2"})
 public class ReviewServiceApplicationTests {
 
 	@Autowired
@@ -63,6 +64,90 @@ public class ReviewServiceApplicationTests {
 				.jsonPath("$[2].reviewId").isEqualTo(3);
 	}
 
+	@Test
+	public void getReviewsByProductIdReadsAllPages() {
+
+		int productId = 1;
+
+		for (int reviewId = 5; reviewId >= 1; reviewId--) {
+			sendCreateReviewEvent(productId, reviewId);
+		}
+
+		getAndVerifyReviewsByProductId(productId, OK)
+				.jsonPath("$.length()").isEqualTo(5)
+				.jsonPath("$[0].reviewId").isEqualTo(1)
+				.jsonPath("$[1].reviewId").isEqualTo(2)
+				.jsonPath("$[2].reviewId").isEqualTo(3)
+				.jsonPath("$[4].reviewId").isEqualTo(5);
+	}
+
+	@Test
+	public void getReviewsByProductIdWithAFullLastPage() {
+
+		int productId = 1;
+
+		for (int reviewId = 1; reviewId <= 4; reviewId++) {
+			sendCreateReviewEvent(productId, reviewId);
+		}
+
+		getAndVerifyReviewsByProductId(productId, OK)
+				.jsonPath("$.length()").isEqualTo(4)
+				.jsonPath("$[3].reviewId").isEqualTo(4);
+	}
+
+	@Test
+	public void getReviewsByProductIds() {
+
+		sendCreateReviewEvent(2, 1);
+		sendCreateReviewEvent(1, 1);
+		sendCreateReviewEvent(2, 2);
+
+		getAndVerifyReviewsByProductId("?productIds=1,2", OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[1].reviewId").isEqualTo(1)
+				.jsonPath("$[2].productId").isEqualTo(2)
+				.jsonPath("$[2].reviewId").isEqualTo(2);
+	}
+
+	@Test
+	public void getReviewsPage() {
+
+		int productId = 1;
+
+		for (int id = 1; id <= 5; id++) {
+			sendCreateReviewEvent(productId, id);
+		}
+		sendCreateReviewEvent(2, 1);
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&limit=2", OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].reviewId").isEqualTo(1)
+				.jsonPath("$[1].reviewId").isEqualTo(2);
+
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&after=4&limit=2", OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].reviewId").isEqualTo(5);
+
+		getAndVerifyReviewsByProductId("/count?productId=" + productId, OK)
+				.jsonPath("$").isEqualTo(5);
+	}
+
+	@Test
+	public void getReviewsByProductIdsAndPageIsRejected() {
+
+		getAndVerifyReviewsByProductId("?productIds=1,2&productId=1&limit=2", BAD_REQUEST);
+	}
+
+	@Test
+	public void getReviewsPageInvalidLimit() {
+
+		getAndVerifyReviewsByProductId("?productId=1&limit=101", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/review")
+				.jsonPath("$.message").isEqualTo("Invalid limit: 101, expected 1 to 100");
+	}
+
 	@Test
 	public void duplicateError() {
 
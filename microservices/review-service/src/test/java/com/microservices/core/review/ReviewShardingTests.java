@@ -0,0 +1,143 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.event.Event;
+import com.microservices.api.exceptions.InvalidInputException;
+import com.microservices.core.review.persistence.ReviewShard;
+import com.microservices.core.review.persistence.ReviewShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static com.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"logging.level.com.microservices=DEBUG",
+		"spring.datasource.url=jdbc:h2:mem:review-shard-0",
+		"app.review.sharding.urls=jdbc:h2:mem:review-shard-1,jdbc:h2:mem:review-shard-2"})
+public class ReviewShardingTests {
+
+	private static final int PRODUCTS = 6;
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReviewShards shards;
+
+	@Autowired
+	@Qualifier("messageProcessor")
+	private Consumer<Event<Integer, Review>> messageProcessor = null;
+
+	@BeforeEach
+	public void setupDb() {
+		shards.getShards().forEach(shard -> shard.getRepository().deleteAll());
+	}
+
+	@Test
+	public void reviewsOfAProductAreOnOneShard() {
+
+		assertEquals(3, shards.getShards().size());
+
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			sendCreateReviewEvent(productId, 1);
+			sendCreateReviewEvent(productId, 2);
+		}
+
+		Set<Integer> usedShards = new HashSet<>();
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			ReviewShard expectedShard = shards.forProductId(productId);
+			usedShards.add(expectedShard.getIndex());
+
+			for (ReviewShard shard : shards.getShards()) {
+				int expectedCount = shard == expectedShard ? 2 : 0;
+				assertEquals(expectedCount, shard.getRepository().findByProductId(productId).size());
+			}
+
+			getAndVerifyReviews("?productId=" + productId)
+					.jsonPath("$.length()").isEqualTo(2)
+					.jsonPath("$[1].reviewId").isEqualTo(2);
+
+			getAndVerifyReviews("/count?productId=" + productId)
+					.jsonPath("$").isEqualTo(2);
+		}
+		assertTrue(usedShards.size() > 1);
+
+		getAndVerifyReviews("?productIds=1,2,3,4,5,6")
+				.jsonPath("$.length()").isEqualTo(2 * PRODUCTS)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].reviewId").isEqualTo(2)
+				.jsonPath("$[11].productId").isEqualTo(6);
+	}
+
+	@Test
+	public void deleteReviewsOnOneShard() {
+
+		for (int productId = 1; productId <= PRODUCTS; productId++) {
+			sendCreateReviewEvent(productId, 1);
+		}
+
+		int productId = 4;
+		ReviewShard shard = shards.forProductId(productId);
+		long reviewsOnShard = shard.getRepository().count();
+
+		sendDeleteReviewEvent(productId);
+
+		assertEquals(0, shard.getRepository().findByProductId(productId).size());
+		assertEquals(reviewsOnShard - 1, shard.getRepository().count());
+
+		long totalCount = shards.getShards().stream().mapToLong(s -> s.getRepository().count()).sum();
+		assertEquals(PRODUCTS - 1, totalCount);
+	}
+
+	@Test
+	public void duplicateErrorOnAdditionalShard() {
+
+		int productId = 4;
+		assertNotEquals(0, shards.forProductId(productId).getIndex());
+
+		sendCreateReviewEvent(productId, 1);
+
+		InvalidInputException thrown = assertThrows(
+				InvalidInputException.class,
+				() -> sendCreateReviewEvent(productId, 1),
+				"Expected a InvalidInputException here!");
+		assertEquals("Duplicate key, Product Id: 4, Review Id:1", thrown.getMessage());
+
+		assertEquals(1, shards.forProductId(productId).getRepository().findByProductId(productId).size());
+	}
+
+	private WebTestClient.BodyContentSpec getAndVerifyReviews(String query) {
+		return client.get()
+				.uri("/review" + query)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private void sendCreateReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		Event<Integer, Review> event = new Event(CREATE, productId, review);
+		messageProcessor.accept(event);
+	}
+
+	private void sendDeleteReviewEvent(int productId) {
+		Event<Integer, Review> event = new Event(DELETE, productId, null);
+		messageProcessor.accept(event);
+	}
+}
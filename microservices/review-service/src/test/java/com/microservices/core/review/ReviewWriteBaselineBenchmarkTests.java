@@ -0,0 +1,65 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.core.review.ReviewService;
+import com.microservices.core.review.persistence.ReviewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * The "before" of {@link ReviewWriteBenchmarkTests}: inserts reviews one by one with the write path as it was
+ * before the batched write path, i.e. with the AUTO id mapping of ReviewEntity, restored by
+ * META-INF/review-baseline-orm.xml, so every insert takes one id from hibernate_sequence, and without JDBC batching
+ * or rewriteBatchedStatements. Runs against MySQL in a container, run it with the benchmark task.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = NONE, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"spring.jpa.mapping-resources=META-INF/review-baseline-orm.xml",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=0",
+		"spring.jpa.properties.hibernate.order_inserts=false",
+		"spring.jpa.properties.hibernate.order_updates=false",
+		"logging.level.com.microservices=INFO",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"})
+public class ReviewWriteBaselineBenchmarkTests extends MySqlTestBase {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewWriteBaselineBenchmarkTests.class);
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void singleInsertsWithAutoIds() {
+
+		long start = System.nanoTime();
+		Flux.range(1, ReviewWriteBenchmarkTests.NUMBER_OF_REVIEWS)
+				.concatMap(reviewId -> reviewService.createReview(
+						new Review(3, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA")))
+				.then()
+				.block();
+		long elapsedNanos = System.nanoTime() - start;
+
+		assertEquals(ReviewWriteBenchmarkTests.NUMBER_OF_REVIEWS, repository.findByProductId(3).size());
+
+		LOG.info("Inserted {} reviews, one by one with AUTO ids (before): {} reviews/s",
+				ReviewWriteBenchmarkTests.NUMBER_OF_REVIEWS, Math.round(ReviewWriteBenchmarkTests.NUMBER_OF_REVIEWS * 1_000_000_000.0 / elapsedNanos));
+	}
+}
@@ -0,0 +1,94 @@
+package com.microservices.core.review;
+
+import com.microservices.api.core.review.Review;
+import com.microservices.api.core.review.ReviewService;
+import com.microservices.api.event.Event;
+import com.microservices.core.review.persistence.ReviewRepository;
+import com.microservices.core.review.services.BulkEventProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+
+import static com.microservices.api.event.Event.Type.CREATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Compares the throughput of inserting reviews one by one, as the blocking messageProcessor does,
+ * with the batched write path, both with the pooled-lo id generator of ReviewEntity. The one by one inserts with
+ * the AUTO id mapping that ReviewEntity had before are measured by {@link ReviewWriteBaselineBenchmarkTests}, in a
+ * context of its own since the mapping is fixed when the EntityManagerFactory is built. Runs against MySQL in a
+ * container, run both with the benchmark task.
+ *
+ * No results are recorded yet. Record the reviews/s of all three runs here, with the MySQL and JDK versions.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = NONE, properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true",
+		"logging.level.com.microservices=INFO",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"})
+public class ReviewWriteBenchmarkTests extends MySqlTestBase {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewWriteBenchmarkTests.class);
+
+	static final int NUMBER_OF_REVIEWS = 5000;
+
+	private static final int BATCH_SIZE = 500;
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private BulkEventProcessor bulkEventProcessor;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void singleInsertsVersusBatchInserts() {
+
+		double singleInsertsPerSecond = reviewsPerSecond(() ->
+				Flux.range(1, NUMBER_OF_REVIEWS)
+						.concatMap(reviewId -> reviewService.createReview(createReview(1, reviewId)))
+						.then()
+						.block());
+
+		assertEquals(NUMBER_OF_REVIEWS, repository.findByProductId(1).size());
+
+		double batchInsertsPerSecond = reviewsPerSecond(() ->
+				Flux.range(1, NUMBER_OF_REVIEWS)
+						.map(reviewId -> new Event<Integer, Review>(CREATE, 2, createReview(2, reviewId)))
+						.buffer(BATCH_SIZE)
+						.concatMap(bulkEventProcessor::process)
+						.then()
+						.block());
+
+		assertEquals(NUMBER_OF_REVIEWS, repository.findByProductId(2).size());
+
+		LOG.info("Inserted {} reviews with pooled-lo ids, one by one: {} reviews/s, in batches of {} (after): {} reviews/s",
+				NUMBER_OF_REVIEWS, Math.round(singleInsertsPerSecond), BATCH_SIZE, Math.round(batchInsertsPerSecond));
+	}
+
+	private double reviewsPerSecond(Runnable inserts) {
+		long start = System.nanoTime();
+		inserts.run();
+		long elapsedNanos = System.nanoTime() - start;
+		return NUMBER_OF_REVIEWS * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	private Review createReview(int productId, int reviewId) {
+		return new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+	}
+}
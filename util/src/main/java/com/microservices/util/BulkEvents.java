@@ -0,0 +1,80 @@
+package com.microservices.util;
+
+import com.microservices.api.event.Event;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.microservices.api.event.Event.Type.DELETE;
+
+/**
+ * Segmenting and dead-lettering of the batches of events applied by the bulk event processors of the core services.
+ *
+ * A batch is split into segments where a key is never both deleted and created, so the events of a segment can be
+ * written without ordering guarantees, e.g. with an unordered bulk write, as long as the segments are written one
+ * after the other.
+ */
+public final class BulkEvents<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BulkEvents.class);
+
+  private final Consumer<Event<Integer, T>> deadLetters;
+
+  /**
+   * @param deadLetters sends an event to the DLQ, e.g. with a StreamBridge and the deadLetters-out-0 binding
+   */
+  public BulkEvents(Consumer<Event<Integer, T>> deadLetters) {
+    this.deadLetters = deadLetters;
+  }
+
+  public List<List<Event<Integer, T>>> splitIntoSegments(List<Event<Integer, T>> events) {
+    List<List<Event<Integer, T>>> segments = new ArrayList<>();
+    List<Event<Integer, T>> segment = new ArrayList<>();
+    Set<Integer> touchedKeys = new HashSet<>();
+    Set<Integer> deletedKeys = new HashSet<>();
+
+    for (Event<Integer, T> event : events) {
+      Integer key = event.getKey();
+      boolean conflict = event.getEventType() == DELETE ? touchedKeys.contains(key) : deletedKeys.contains(key);
+
+      if (conflict) {
+        segments.add(segment);
+        segment = new ArrayList<>();
+        touchedKeys.clear();
+        deletedKeys.clear();
+      }
+
+      segment.add(event);
+      touchedKeys.add(key);
+      if (event.getEventType() == DELETE) {
+        deletedKeys.add(key);
+      }
+    }
+
+    if (!segment.isEmpty()) {
+      segments.add(segment);
+    }
+    return segments;
+  }
+
+  /**
+   * Groups the events of a segment, e.g. by the shard they are written to, keeping the order of the events per group.
+   */
+  public <G> Map<G, List<Event<Integer, T>>> groupBy(List<Event<Integer, T>> segment, Function<Event<Integer, T>, G> classifier) {
+    Map<G, List<Event<Integer, T>>> groups = new LinkedHashMap<>();
+    segment.forEach(event -> groups.computeIfAbsent(classifier.apply(event), group -> new ArrayList<>()).add(event));
+    return groups;
+  }
+
+  public void sendToDeadLetters(Event<Integer, T> event, String reason) {
+    LOG.warn("Failed to process {} event for productId: {}, will send it to the DLQ, error: {}", event.getEventType(), event.getKey(), reason);
+    deadLetters.accept(event);
+  }
+}
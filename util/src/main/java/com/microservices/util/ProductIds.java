@@ -0,0 +1,29 @@
+package com.microservices.util;
+
+import com.microservices.api.exceptions.InvalidInputException;
+import java.util.List;
+
+/**
+ * Validation of the product ids of the batch lookups in the core services.
+ */
+public final class ProductIds {
+
+  public static final int MAX_PRODUCT_IDS = 100;
+
+  private ProductIds() {
+  }
+
+  public static void validateProductIds(List<Integer> productIds) {
+
+    if (productIds.isEmpty() || productIds.size() > MAX_PRODUCT_IDS) {
+      throw new InvalidInputException("Invalid number of productIds: " + productIds.size() + ", expected 1 to " + MAX_PRODUCT_IDS);
+    }
+
+    productIds.stream()
+      .filter(productId -> productId == null || productId < 1)
+      .findFirst()
+      .ifPresent(productId -> {
+        throw new InvalidInputException("Invalid productId: " + productId);
+      });
+  }
+}
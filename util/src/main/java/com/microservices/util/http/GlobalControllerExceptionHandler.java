@@ -3,6 +3,7 @@ package com.microservices.util.http;
 import com.microservices.api.exceptions.BadRequestException;
 import com.microservices.api.exceptions.InvalidInputException;
 import com.microservices.api.exceptions.NotFoundException;
+import com.microservices.api.exceptions.ServiceUnavailableException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +45,14 @@ class GlobalControllerExceptionHandler {
     return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
   }
 
+  @ResponseStatus(SERVICE_UNAVAILABLE)
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public @ResponseBody HttpErrorInfo handleServiceUnavailableException(
+          ServerHttpRequest request, ServiceUnavailableException ex) {
+
+    return createHttpErrorInfo(SERVICE_UNAVAILABLE, request, ex);
+  }
+
   private HttpErrorInfo createHttpErrorInfo(
           HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
 